@@ -1,171 +1,401 @@
-import java.util.Collections;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Arrays;
 import java.util.stream.IntStream;
 
 class AutoMiner{
+    static final int COVERED = 10;
+    static final int FLAGGED = 11;
+    static final int REMOVED = 12;
+    private static final PatternTable PATTERNS = PatternTable.load();
+    // rounds of absurdDeductionMining with at least this many dirty numbers are evaluated in parallel
+    private static final int PARALLEL_NUMBERS = 64;
+    private static final int[] NONE = new int[0];
     private MineField game;
     private final int height;
     private final int width;
+    private final boolean guessing;
+    private final FrontierSolver solver;
+    private final LinearSolver linear;
+    // the miner's own view of the board, kept across execute() calls
+    private int[] cells = null;
+    // open count of the game when cells was last brought up to date
+    private int openCount = -1;
+    // (index, previous value) pairs of tentative changes, rolled back after each hypothesis
+    private final IntList trail = new IntList();
+    private boolean tentative = false;
+    // number cells waiting to be checked by propagate
+    private final IntList queue = new IntList();
+    // number cells near a change since absurdDeductionMining last looked at them
+    private final IntList dirty = new IntList();
+    private boolean[] isDirty;
+    // deduced moves not yet applied to the game
+    private final IntList pendingFlags = new IntList();
+    private final IntList pendingOpens = new IntList();
+    // board cells under the pattern window being probed
+    private final int[] window = new int[PatternTable.CELLS];
+    // neighbors of the number under hypothesis and how often each ends up flagged or removed
+    private final int[] around = new int[8];
+    private final int[] flaggedMap = new int[8];
+    private final int[] removedMap = new int[8];
+    // work done since construction, read by the phases to record metrics
+    private long iterations = 0;
+    private long hypotheses = 0;
     AutoMiner(MineField field){
+        this(field, false);
+    }
+    // a guessing miner opens the safest covered cell when no cell is certainly safe
+    AutoMiner(MineField field, boolean guessing){
         this.height = field.getHeight();
         this.width = field.getWidth();
         this.game = field;
+        this.guessing = guessing;
+        this.solver = new FrontierSolver(height, width);
+        this.linear = new LinearSolver(height, width);
+    }
+    // a copy of the miner's view for trying hypotheses on another thread
+    private AutoMiner(AutoMiner miner){
+        this.height = miner.height;
+        this.width = miner.width;
+        this.game = miner.game;
+        this.guessing = miner.guessing;
+        this.solver = null;
+        this.linear = null;
+        this.cells = miner.cells.clone();
     }
     void execute(){
         if(game.isDefault()){
             game.open(width/2, height/2);
         }else if(game.isRunning()){
-            List<Cell> cells = getCells(game);
-            clearing(cells);
-            simpleMining(cells);
-            absurdDeductionMining(cells);
-            accept(cells);
+            prepare();
+            deduce();
+            accept();
         }
     }
-    private List<Cell> getCells(MineField field){
-        return IntStream.range(0, width*height)
-                .mapToObj(i->new Cell(i, getValueOf(field.getViewOf(i%width, i/width))))
-                .collect(Collectors.toList());
+    // anything opened behind the miner's back invalidates its view
+    void prepare(){
+        if(openCount!=game.getOpenCount()) synchronize();
+    }
+    // works on the miner's own view only, so it may run off the thread that owns the game;
+    // returns false if the thread was interrupted before the deduction was complete
+    boolean deduce(){
+        simpleMining();
+        patternMining();
+        linearMining();
+        absurdDeductionMining();
+        if(Thread.currentThread().isInterrupted()) return false;
+        if(pendingOpens.size()==0) frontierMining();
+        return true;
+    }
+    // the next prepare() rebuilds the view from the game
+    void invalidate(){
+        openCount = -1;
+    }
+    void synchronize(){
+        long start = System.nanoTime();
+        cells = getCells(game);
+        isDirty = new boolean[cells.length];
+        queue.clear();
+        dirty.clear();
+        pendingFlags.clear();
+        pendingOpens.clear();
+        for(int i = 0;i<cells.length;i++){
+            if(cells[i]==FLAGGED) cells[i] = COVERED;
+            if(isNumber(cells[i])){
+                queue.add(i);
+                isDirty[i] = true;
+                dirty.add(i);
+            }
+        }
+        openCount = game.getOpenCount();
+        Metrics.SYNCHRONIZE.since(start);
     }
-    private static int getValueOf(MineField.CellView view){
+    private int[] getCells(MineField field){
+        int[] cells = new int[width*height];
+        for(int i = 0;i<cells.length;i++){
+            cells[i] = getValueOf(field.getViewOf(i));
+        }
+        return cells;
+    }
+    static int getValueOf(MineField.CellView view){
         switch(view){
-            case FLAGGED: return Cell.FLAGGED;
-            case COVERED: return Cell.COVERED;
+            case FLAGGED: return FLAGGED;
+            case COVERED: return COVERED;
             default: return view.ordinal();
         }
     }
-    private class Cell implements Cloneable{
-        private static final int COVERED = 10;
-        private static final int FLAGGED = 11;
-        private static final int REMOVED = 12;
-        private int index = 0;
-        private int value = 0;
-        private Cell(int index, int value){
-            this.index = index;
-            this.value = value;
-        }
-        @Override
-        public Cell clone(){
-            Cell cell = null;
-            try{
-                cell = (Cell)super.clone();
-            }catch(CloneNotSupportedException e){
-                e.printStackTrace();
+    private static boolean isNumber(int value){
+        return value>0&&value<9;
+    }
+    private int countAround(int index, int value){
+        int count = 0;
+        for(int d = 0;d<8;d++){
+            int n = Grid.neighborOf(index, d, height, width);
+            if(n>=0&&cells[n]==value) count++;
+        }
+        return count;
+    }
+    void accept(){
+        long start = System.nanoTime();
+        // a move made elsewhere since the miner last looked keeps openCount stale for prepare() to notice
+        boolean current = openCount==game.getOpenCount();
+        for(int i = 0;i<pendingFlags.size();i++){
+            int index = pendingFlags.get(i);
+            if(game.getViewOf(index)==MineField.CellView.COVERED) game.toggleFlag(index%width, index/width);
+        }
+        pendingFlags.clear();
+        for(int i = 0;i<pendingOpens.size();i++){
+            int index = pendingOpens.get(i);
+            for(int revealed: game.open(index%width, index/width)){
+                cells[revealed] = getValueOf(game.getViewOf(revealed));
+                if(isNumber(cells[revealed])) queue.add(revealed);
+                enqueueAround(revealed);
+                markDirty(revealed);
             }
-            return cell;
-        }
-        private List<Cell> aroundCells(List<Cell> cells){
-            return IntStream.range(0, 9).filter(i->i!=4)
-                    .mapToObj(i->new int[]{index%width + i%3 - 1, index/width + i/3 - 1})
-                    .filter(p->p[0]>=0&&p[0]<width&&p[1]>=0&&p[1]<height)
-                    .mapToInt(p->p[0] + p[1]*width)
-                    .mapToObj(cells::get)
-                    .collect(Collectors.toList());
-        }
-        private boolean isCovered(){
-            return value==COVERED;
-        }
-        private boolean isFlagged(){
-            return value==FLAGGED;
-        }
-        private boolean isRemoved(){
-            return value==REMOVED;
-        }
-        private void removeFlag(){
-            this.value = COVERED;
-        }
-        private void flag(){
-            this.value = FLAGGED;
-        }
-        private void open(){
-            this.value = REMOVED;
-        }
-        private void update(){
-            this.value = getValueOf(game.getViewOf(index%width, index/width));
-        }
-    }
-    private void accept(List<Cell> cells){
-        cells.stream().filter(Cell::isFlagged)
-                .filter(cell->game.getViewOf(cell.index%width, cell.index/width)==MineField.CellView.COVERED)
-                .peek(cell->game.toggleFlag(cell.index%width, cell.index/width))
-                .forEach(Cell::update);
-        cells.stream().filter(Cell::isRemoved)
-                .peek(cell->game.open(cell.index%width, cell.index/width))
-                .forEach(Cell::update);
-    }
-    private static void clearing(List<Cell> cells){
-        cells.stream().filter(Cell::isFlagged).forEach(Cell::removeFlag);
-    }
-    private static void simpleMining(List<Cell> cells){
-        for(;;) if(fullCountFlagging(cells)&fullCountMining(cells)) break;
-    }
-    private static boolean fullCountFlagging(List<Cell> cells){
-        return cells.stream().filter(cell->cell.value>0&&cell.value<9)
-                .filter(cell->{
-                    int flaggedCount = (int)cell.aroundCells(cells).stream().filter(Cell::isFlagged).count();
-                    int coveredCount = (int)cell.aroundCells(cells).stream().filter(Cell::isCovered).count();
-                    return coveredCount>0&&cell.value - flaggedCount==coveredCount;
-                }).peek(cell->cell.aroundCells(cells).stream().filter(Cell::isCovered).forEach(Cell::flag)).count()==0;
-    }
-    private static boolean fullCountMining(List<Cell> cells){
-        return cells.stream().filter(cell->cell.value>0&&cell.value<9)
-                .filter(cell->{
-                    int flaggedCount = (int)cell.aroundCells(cells).stream().filter(Cell::isFlagged).count();
-                    int coveredCount = (int)cell.aroundCells(cells).stream().filter(Cell::isCovered).count();
-                    return coveredCount>0&&cell.value==flaggedCount;
-                }).peek(cell->cell.aroundCells(cells).stream().filter(Cell::isCovered).forEach(Cell::open)).count()==0;
-    }
-    private static boolean isConsistent(List<Cell> virtual){
-        return virtual.stream().filter(cell->cell.value>0&&cell.value<9).noneMatch(cell->{
-            int flaggedCount = (int)cell.aroundCells(virtual).stream().filter(Cell::isFlagged).count();
-            int coveredCount = (int)cell.aroundCells(virtual).stream().filter(Cell::isCovered).count();
-            return cell.value<flaggedCount||cell.value - flaggedCount>coveredCount;
-        });
+        }
+        pendingOpens.clear();
+        if(current) openCount = game.getOpenCount();
+        Metrics.ACCEPT.since(start);
+    }
+    void simpleMining(){
+        long start = System.nanoTime();
+        long before = iterations;
+        propagate();
+        Metrics.SIMPLE.since(start);
+        Metrics.SIMPLE_ITERATIONS.record(iterations - before);
+    }
+    private void set(int index, int value){
+        if(tentative){
+            trail.add(index);
+            trail.add(cells[index]);
+        }else{
+            (value==FLAGGED? pendingFlags: pendingOpens).add(index);
+        }
+        cells[index] = value;
+        enqueueAround(index);
+        if(!tentative) markDirty(index);
+    }
+    private void enqueueAround(int index){
+        for(int d = 0;d<8;d++){
+            int n = Grid.neighborOf(index, d, height, width);
+            if(n>=0&&isNumber(cells[n])) queue.add(n);
+        }
+    }
+    // a hypothesis around a number mostly depends on the cells within two steps of it, so only
+    // numbers that close to a change are evaluated again; frontierMining catches anything beyond
+    private void markDirty(int index){
+        int x = index%width;
+        int y = index/width;
+        for(int j = Math.max(0, y - 2);j<=Math.min(height - 1, y + 2);j++){
+            for(int i = Math.max(0, x - 2);i<=Math.min(width - 1, x + 2);i++){
+                int n = i + j*width;
+                if(isNumber(cells[n])&&!isDirty[n]){
+                    isDirty[n] = true;
+                    dirty.add(n);
+                }
+            }
+        }
+    }
+    private void rollback(int mark){
+        while(trail.size()>mark){
+            int value = trail.removeLast();
+            cells[trail.removeLast()] = value;
+        }
     }
-    private void absurdDeductionMining(List<Cell> cells){
-        cells.stream().filter(cell->cell.value>0&&cell.value<9).filter(cell->{
-            int flaggedCount = (int)cell.aroundCells(cells).stream().filter(Cell::isFlagged).count();
-            int coveredCount = (int)cell.aroundCells(cells).stream().filter(Cell::isCovered).count();
-            return coveredCount>cell.value - flaggedCount;
-        }).forEach(cell->{
-            int[] flaggedMap = new int[8];
-            int[] removedMap = new int[8];
-            int count = (int)tentativeFlagging(cells, cell.index, 0).stream()
-                    .peek(AutoMiner::simpleMining)
-                    .filter(AutoMiner::isConsistent)
-                    .peek(virtual->{
-                        List<Cell> around = cell.aroundCells(virtual);
-                        IntStream.range(0, around.size()).forEach(i->{
-                            Cell target = around.get(i);
-                            if(target.isRemoved()) removedMap[i]++;
-                            if(target.isFlagged()) flaggedMap[i]++;
-                        });
-                    }).count();
-            if(count>0){
-                IntStream.range(0, 8).forEach(i->{
-                    if(flaggedMap[i]==count) cell.aroundCells(cells).get(i).flag();
-                    if(removedMap[i]==count) cell.aroundCells(cells).get(i).open();
-                });
+    // applies the full count rules to the queued numbers and everything they touch,
+    // returns false as soon as a number has too many flags or too few covered cells
+    private boolean propagate(){
+        while(queue.size()>0){
+            int index = queue.removeLast();
+            iterations++;
+            int flaggedCount = countAround(index, FLAGGED);
+            int coveredCount = countAround(index, COVERED);
+            int rest = cells[index] - flaggedCount;
+            if(rest<0||rest>coveredCount){
+                queue.clear();
+                return false;
             }
+            if(coveredCount==0||(rest!=0&&rest!=coveredCount)) continue;
+            for(int d = 0;d<8;d++){
+                int n = Grid.neighborOf(index, d, height, width);
+                if(n>=0&&cells[n]==COVERED) set(n, rest==0? REMOVED: FLAGGED);
+            }
+        }
+        return true;
+    }
+    // settles the common local patterns by table lookup, so that fewer numbers are left
+    // for absurdDeductionMining to enumerate; the dirty numbers stay dirty for it
+    void patternMining(){
+        long start = System.nanoTime();
+        for(int next = 0;next<dirty.size();next++){
+            int i = dirty.get(next);
+            int x = i%width;
+            int y = i/width;
+            // a pair of two dirty numbers is probed from its left or upper one only
+            if(x + 1<width) probe(i, i + 1, true);
+            if(x>0&&!isDirty[i - 1]) probe(i - 1, i, true);
+            if(y + 1<height) probe(i, i + width, false);
+            if(y>0&&!isDirty[i - width]) probe(i - width, i, false);
+        }
+        Metrics.PATTERN.since(start);
+    }
+    // a and b are neighbors, b right of a or, if not horizontal, below it
+    private void probe(int a, int b, boolean horizontal){
+        if(!isNumber(cells[a])||!isNumber(cells[b])) return;
+        int ax = a%width;
+        int ay = a/width;
+        int covered = 0;
+        for(int k = 0;k<PatternTable.CELLS;k++){
+            int x = ax + (horizontal? PatternTable.COLUMN[k]: PatternTable.ROW[k]) - 1;
+            int y = ay + (horizontal? PatternTable.ROW[k]: PatternTable.COLUMN[k]) - 1;
+            window[k] = x>=0&&x<width&&y>=0&&y<height? x + y*width: -1;
+            if(window[k]>=0&&cells[window[k]]==COVERED) covered |= 1<<k;
+        }
+        if(covered==0) return;
+        int restA = cells[a] - countAround(a, FLAGGED);
+        int restB = cells[b] - countAround(b, FLAGGED);
+        if(restA<0||restB<0) return;
+        int forced = PATTERNS.lookup(PatternTable.keyOf(covered, restA, restB));
+        if(forced==0) return;
+        for(int k = 0;k<PatternTable.CELLS;k++){
+            if((forced>>k&1)!=0) set(window[k], FLAGGED);
+            if((forced>>(k + PatternTable.CELLS)&1)!=0) set(window[k], REMOVED);
+        }
+        propagate();
+    }
+    // cells forced by several dirty numbers together, found without enumerating hypotheses
+    void linearMining(){
+        long start = System.nanoTime();
+        IntList mines = new IntList();
+        IntList safe = new IntList();
+        linear.solve(cells, dirty.toArray(), mines, safe);
+        for(int i = 0;i<mines.size();i++) if(cells[mines.get(i)]==COVERED) set(mines.get(i), FLAGGED);
+        for(int i = 0;i<safe.size();i++) if(cells[safe.get(i)]==COVERED) set(safe.get(i), REMOVED);
+        propagate();
+        Metrics.LINEAR.since(start);
+    }
+    void absurdDeductionMining(){
+        long start = System.nanoTime();
+        long before = hypotheses;
+        // numbers marked dirty while this runs are picked up in the same pass
+        for(int next = 0;next<dirty.size();){
+            if(Thread.currentThread().isInterrupted()) break;
+            if(dirty.size() - next>=PARALLEL_NUMBERS){
+                next = parallelRound(next);
+                continue;
+            }
+            int i = dirty.get(next++);
+            isDirty[i] = false;
+            markForced(forcedAround(i));
+            propagate();
+        }
+        dirty.clear();
+        Metrics.ABSURD.since(start);
+        Metrics.HYPOTHESES.record(hypotheses - before);
+    }
+    // evaluates the dirty numbers from the given position on against the same view, each worker on
+    // its own copy, then marks what they found in the order of the dirty list, so the outcome does
+    // not depend on how the work was split; returns the position after the round
+    private int parallelRound(int from){
+        int[] round = new int[dirty.size() - from];
+        for(int k = 0;k<round.length;k++){
+            round[k] = dirty.get(from + k);
+            isDirty[round[k]] = false;
+        }
+        int[][] forced = new int[round.length][];
+        Thread caller = Thread.currentThread();
+        AutoMiner workers = IntStream.range(0, round.length).parallel().collect(()->new AutoMiner(this), (worker, k)->{
+            if(!caller.isInterrupted()) forced[k] = worker.forcedAround(round[k]);
+        }, (a, b)->{
+            a.hypotheses += b.hypotheses;
+            a.iterations += b.iterations;
         });
+        hypotheses += workers.hypotheses;
+        iterations += workers.iterations;
+        // everything was deduced from one consistent view, so all of it holds together
+        for(int[] cellsOf: forced) if(cellsOf!=null) markForced(cellsOf);
+        propagate();
+        return from + round.length;
     }
-    private static List<Cell> deepCopyOf(List<Cell> original){
-        return original.stream().map(Cell::clone).collect(Collectors.toList());
-    }
-    private static List<List<Cell>> tentativeFlagging(List<Cell> virtual, int baseIndex, int startIndex){
-        return virtual.get(baseIndex).aroundCells(virtual).stream()
-                .filter(target->target.index>=startIndex)
-                .filter(Cell::isCovered)
-                .map(target->{
-                    List<Cell> child = deepCopyOf(virtual);
-                    child.get(target.index).flag();
-                    int flaggedCount = (int)virtual.get(baseIndex).aroundCells(child).stream().filter(Cell::isFlagged).count();
-                    if(virtual.get(baseIndex).value>flaggedCount){
-                        return tentativeFlagging(child, baseIndex, target.index);
-                    }else{
-                        return Collections.singletonList(child);
-                    }
-                }).flatMap(List::stream).collect(Collectors.toList());
+    // the covered neighbors of number i that are flagged in every consistent hypothesis,
+    // and as ~index those that are removed in every one
+    private int[] forcedAround(int i){
+        int rest = cells[i] - countAround(i, FLAGGED);
+        int coveredCount = 0;
+        for(int d = 0;d<8;d++){
+            int n = Grid.neighborOf(i, d, height, width);
+            around[d] = n;
+            if(n>=0&&cells[n]==COVERED) coveredCount++;
+        }
+        if(coveredCount<=rest) return NONE;
+        Arrays.fill(flaggedMap, 0);
+        Arrays.fill(removedMap, 0);
+        tentative = true;
+        int count = tentativeFlagging(i, around, 0, rest, flaggedMap, removedMap);
+        tentative = false;
+        if(count==0) return NONE;
+        IntList forced = new IntList(8);
+        for(int d = 0;d<8;d++){
+            if(around[d]<0||cells[around[d]]!=COVERED) continue;
+            if(flaggedMap[d]==count) forced.add(around[d]);
+            if(removedMap[d]==count) forced.add(~around[d]);
+        }
+        return forced.toArray();
+    }
+    private void markForced(int[] forced){
+        for(int cell: forced){
+            int index = cell>=0? cell: ~cell;
+            if(cells[index]==COVERED) set(index, cell>=0? FLAGGED: REMOVED);
+        }
+    }
+    // flags every combination of the remaining mines among the covered cells around base,
+    // and counts how often each neighbor ends up flagged or removed in a consistent board
+    private int tentativeFlagging(int base, int[] around, int start, int rest, int[] flaggedMap, int[] removedMap){
+        if(rest==0){
+            hypotheses++;
+            int mark = trail.size();
+            queue.clear();
+            queue.add(base);
+            for(int d = 0;d<8;d++){
+                if(around[d]>=0&&cells[around[d]]==FLAGGED) enqueueAround(around[d]);
+            }
+            int consistent = 0;
+            if(propagate()){
+                consistent = 1;
+                for(int d = 0;d<8;d++){
+                    if(around[d]<0) continue;
+                    if(cells[around[d]]==FLAGGED) flaggedMap[d]++;
+                    if(cells[around[d]]==REMOVED) removedMap[d]++;
+                }
+            }
+            rollback(mark);
+            return consistent;
+        }
+        int count = 0;
+        for(int d = start;d<8;d++){
+            if(around[d]<0||cells[around[d]]!=COVERED) continue;
+            int mark = trail.size();
+            set(around[d], FLAGGED);
+            count += tentativeFlagging(base, around, d + 1, rest - 1, flaggedMap, removedMap);
+            rollback(mark);
+        }
+        return count;
+    }
+    void frontierMining(){
+        long start = System.nanoTime();
+        double[] probabilities = solver.probabilities(cells, game.getMines());
+        int safest = -1;
+        boolean found = false;
+        for(int i = 0;i<cells.length;i++){
+            if(cells[i]!=COVERED||Double.isNaN(probabilities[i])) continue;
+            if(probabilities[i]==0){
+                set(i, REMOVED);
+                found = true;
+            }else if(probabilities[i]==1){
+                set(i, FLAGGED);
+            }else if(safest<0||probabilities[i]<probabilities[safest]){
+                safest = i;
+            }
+        }
+        if(!found&&guessing&&safest>=0) set(safest, REMOVED);
+        Metrics.FRONTIER.since(start);
     }
 }
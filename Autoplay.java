@@ -0,0 +1,167 @@
+import javax.swing.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Runs AutoMiner passes off the event thread. Only the deduction runs in the background, on the
+// miner's own view of the board; the game itself is read and changed on the event thread alone,
+// so painting and input never race with the solver. Every method must be called on the event thread.
+class Autoplay{
+    // one solver thread for the whole application, games hand it one pass at a time
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r->{
+        Thread thread = new Thread(r, "autoplay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // the search for a no-guess board can take seconds, it gets a thread of its own so no pass waits on it
+    private static final ExecutorService GENERATOR = Executors.newSingleThreadExecutor(r->{
+        Thread thread = new Thread(r, "generator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    interface Listener{
+        // a batch of moves has been applied to the game
+        void moved();
+        // autoplay ended: solved, exploded, stuck or cancelled
+        void stopped();
+    }
+    private final MineField game;
+    private final AutoMiner miner;
+    private final Listener listener;
+    private boolean continuous = false;
+    // a pass is deducing in the background or waiting to be delivered
+    private boolean busy = false;
+    private volatile boolean cancelled = false;
+    private volatile Thread worker = null;
+    Autoplay(MineField game, AutoMiner miner, Listener listener){
+        this.game = game;
+        this.miner = miner;
+        this.listener = listener;
+    }
+    // a single pass
+    void step(){
+        run(false);
+    }
+    // passes until the board is finished or the miner is stuck
+    void start(){
+        run(true);
+    }
+    private void run(boolean continuous){
+        this.continuous = continuous;
+        cancelled = false;
+        if(!busy) pass();
+    }
+    void cancel(){
+        cancelled = true;
+        Thread thread = worker;
+        if(thread!=null) thread.interrupt();
+        if(!busy) stop();
+    }
+    boolean isRunning(){
+        return busy;
+    }
+    // the first click of a no-guess game, reported through moved once the board is found;
+    // ignored while a pass is busy
+    void openFirst(int x, int y){
+        if(busy||!game.isDefault()) return;
+        continuous = false;
+        cancelled = false;
+        generate(x, y);
+    }
+    // The board is searched for on a field of its own with the game's seed, and the game takes it over
+    // only when it arrives, so the event thread never waits and a log of the game replays to the same board.
+    private void generate(int x, int y){
+        busy = true;
+        MineField candidate = new MineField(game.getHeight(), game.getWidth(), game.getMines(), game.getSeed());
+        candidate.setNoGuess(game.isNoGuess());
+        GENERATOR.execute(()->{
+            try{
+                candidate.generate(x, y);
+            }finally{
+                SwingUtilities.invokeLater(()->generated(candidate, x, y));
+            }
+        });
+    }
+    private void generated(MineField candidate, int x, int y){
+        busy = false;
+        // a failed search leaves the game ready, the next click tries again
+        if(cancelled||!candidate.isRunning()||!game.isDefault()){
+            stop();
+            return;
+        }
+        game.restore(candidate.snapshot());
+        game.open(x, y);
+        listener.moved();
+        if(continuous&&game.isRunning()){
+            pass();
+        }else{
+            stop();
+        }
+    }
+    private void pass(){
+        if(!game.isRunning()){
+            if(game.isDefault()&&game.isNoGuess()){
+                generate(game.getWidth()/2, game.getHeight()/2);
+                return;
+            }
+            if(game.isDefault()){
+                miner.execute();
+                listener.moved();
+                if(continuous&&game.isRunning()){
+                    pass();
+                    return;
+                }
+            }
+            stop();
+            return;
+        }
+        miner.prepare();
+        busy = true;
+        EXECUTOR.execute(()->{
+            boolean complete = false;
+            boolean failed = true;
+            try{
+                Thread.interrupted(); // a cancel aimed at an earlier pass
+                worker = Thread.currentThread();
+                complete = !cancelled&&miner.deduce();
+                failed = false;
+            }finally{
+                // a failed deduction is delivered as incomplete, so busy is cleared and the exception
+                // still reaches the executor thread's handler
+                worker = null;
+                Thread.interrupted();
+                boolean delivered = complete;
+                boolean stopped = failed;
+                SwingUtilities.invokeLater(()->deliver(delivered, stopped));
+            }
+        });
+    }
+    private void deliver(boolean complete, boolean failed){
+        busy = false;
+        // an interrupted deduction left the miner's view half done, it is rebuilt on the next pass
+        if(!complete) miner.invalidate();
+        // a failure is not retried, it would most likely fail again
+        if(cancelled||failed){
+            miner.invalidate();
+            stop();
+            return;
+        }
+        if(!complete){
+            pass();
+            return;
+        }
+        int openCount = game.getOpenCount();
+        int mineCount = game.getMineCount();
+        miner.accept();
+        listener.moved();
+        boolean progressed = game.getOpenCount()!=openCount||game.getMineCount()!=mineCount;
+        if(continuous&&progressed&&game.isRunning()){
+            pass();
+        }else{
+            stop();
+        }
+    }
+    private void stop(){
+        continuous = false;
+        listener.stopped();
+    }
+}
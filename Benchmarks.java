@@ -0,0 +1,182 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+class Benchmarks{
+    private static final long SEED = 0x5EEDL;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+    private static final long ITERATION_NANOS = 200_000_000L;
+    // keeps results alive so the JIT cannot drop the measured work
+    private static volatile Object sink;
+    private interface Fixture<T>{
+        T create(long seed);
+    }
+    private interface Operation<T>{
+        Object run(T state);
+    }
+    private static class Board{
+        private final String name;
+        private final int height;
+        private final int width;
+        private final int mines;
+        private Board(String name, int height, int width, int mines){
+            this.name = name;
+            this.height = height;
+            this.width = width;
+            this.mines = mines;
+        }
+        private MineField create(long seed){
+            return new MineField(height, width, mines, seed);
+        }
+        private MineField opened(long seed){
+            MineField field = create(seed);
+            field.open(width/2, height/2);
+            return field;
+        }
+    }
+    // solver state right before one of the AutoMiner phases
+    private static class Phase{
+        private final AutoMiner miner;
+        private Phase(MineField field){
+            this.miner = new AutoMiner(field);
+            miner.synchronize();
+        }
+    }
+    private static final List<Board> PRESETS = new ArrayList<>();
+    private static final List<Board> LARGE = new ArrayList<>();
+    static{
+        for(MineField.Difficulty d: MineField.Difficulty.values()){
+            MineField field = new MineField(d);
+            PRESETS.add(new Board(d.name(), field.getHeight(), field.getWidth(), field.getMines()));
+        }
+        LARGE.add(new Board("100x100x2000", 100, 100, 2000));
+        LARGE.add(new Board("1000x1000x150000", 1000, 1000, 150000));
+    }
+    private final Pattern filter;
+    private Benchmarks(Pattern filter){
+        this.filter = filter;
+    }
+    // every invocation gets a fresh state from the fixture, only the operation is timed
+    private <T> void measure(String name, Board board, Fixture<T> fixture, Operation<T> operation){
+        if(!filter.matcher(name + ":" + board.name).find()) return;
+        double[] scores = new double[ITERATIONS];
+        long seed = SEED;
+        for(int i = -WARMUP;i<ITERATIONS;i++){
+            long elapsed = 0;
+            long ops = 0;
+            long deadline = System.nanoTime() + 5*ITERATION_NANOS;
+            while(elapsed<ITERATION_NANOS&&System.nanoTime()<deadline){
+                T state = fixture.create(seed++);
+                long start = System.nanoTime();
+                sink = operation.run(state);
+                elapsed += System.nanoTime() - start;
+                ops++;
+            }
+            if(i>=0) scores[i] = elapsed/1e3/ops;
+        }
+        report(name, board.name, scores);
+    }
+    // the state is created once and the operation is repeated on it
+    private <T> void measureShared(String name, Board board, Fixture<T> fixture, Operation<T> operation){
+        T state = fixture.create(SEED);
+        measure(name, board, seed->state, operation);
+    }
+    private static void report(String name, String board, double[] scores){
+        double mean = 0;
+        for(double score: scores) mean += score;
+        mean /= scores.length;
+        double variance = 0;
+        for(double score: scores) variance += (score - mean)*(score - mean);
+        double error = Math.sqrt(variance/(scores.length - 1));
+        System.out.printf(Locale.ROOT, "%-26s %-18s avgt %3d %14.3f +- %12.3f us/op%n", name, board, scores.length, mean, error);
+    }
+    private void run(){
+        System.out.printf("%-26s %-18s Mode Cnt %14s   %12s Units%n", "Benchmark", "Board", "Score", "Error");
+        List<Board> all = new ArrayList<>(PRESETS);
+        all.addAll(LARGE);
+        Board sparse = new Board("1000x1000x10000", 1000, 1000, 10000);
+        for(Board board: all){
+            measure("generate", board, board::create, field->{
+                field.generate(board.width/2, board.height/2);
+                return field;
+            });
+            measure("open", board, seed->{
+                MineField field = board.create(seed);
+                field.generate(board.width/2, board.height/2);
+                return field;
+            }, field->field.open(board.width/2, board.height/2));
+            measureShared("getView", board, board::opened, MineField::getView);
+            measureShared("getMineCount", board, board::opened, MineField::getMineCount);
+        }
+        measure("open", sparse, seed->{
+            MineField field = sparse.create(seed);
+            field.generate(sparse.width/2, sparse.height/2);
+            return field;
+        }, field->field.open(sparse.width/2, sparse.height/2));
+        for(Board board: all){
+            measure("AutoMiner.synchronize", board, seed->new AutoMiner(board.opened(seed)), miner->{
+                miner.synchronize();
+                return miner;
+            });
+            measure("AutoMiner.simpleMining", board, seed->new Phase(board.opened(seed)), phase->{
+                phase.miner.simpleMining();
+                return phase.miner;
+            });
+            measure("AutoMiner.patternMining", board, seed->{
+                Phase phase = new Phase(board.opened(seed));
+                phase.miner.simpleMining();
+                return phase;
+            }, phase->{
+                phase.miner.patternMining();
+                return phase.miner;
+            });
+            measure("AutoMiner.linearMining", board, seed->{
+                Phase phase = new Phase(board.opened(seed));
+                phase.miner.simpleMining();
+                phase.miner.patternMining();
+                return phase;
+            }, phase->{
+                phase.miner.linearMining();
+                return phase.miner;
+            });
+            measure("AutoMiner.absurdDeduction", board, seed->{
+                Phase phase = new Phase(board.opened(seed));
+                phase.miner.simpleMining();
+                phase.miner.patternMining();
+                phase.miner.linearMining();
+                return phase;
+            }, phase->{
+                phase.miner.absurdDeductionMining();
+                return phase.miner;
+            });
+            measure("AutoMiner.frontierMining", board, seed->{
+                Phase phase = new Phase(board.opened(seed));
+                phase.miner.simpleMining();
+                phase.miner.patternMining();
+                phase.miner.linearMining();
+                phase.miner.absurdDeductionMining();
+                return phase;
+            }, phase->{
+                phase.miner.frontierMining();
+                return phase.miner;
+            });
+            measure("AutoMiner.accept", board, seed->{
+                Phase phase = new Phase(board.opened(seed));
+                phase.miner.simpleMining();
+                phase.miner.patternMining();
+                phase.miner.linearMining();
+                phase.miner.absurdDeductionMining();
+                return phase;
+            }, phase->{
+                phase.miner.accept();
+                return phase.miner;
+            });
+        }
+    }
+    // usage: java Benchmarks [regex on "benchmark:board"]
+    public static void main(String[] args){
+        new Benchmarks(Pattern.compile(args.length>0? args[0]: "")).run();
+    }
+}
@@ -0,0 +1,249 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+// Difficulty statistics of generated layouts: 3BV, openings and their sizes, isolated numbers and
+// whether AutoMiner needs to guess. Boards are generated or read one at a time inside parallel
+// chunks and only their counts are kept, so any number of boards fits in memory.
+class BoardAnalytics{
+    private static final int CHUNK = 10000;
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+    private final int height;
+    private final int width;
+    private final int mines;
+    private final String name;
+    private final long seed;
+    private final BoardCorpus corpus;
+    private boolean solve = true;
+    private boolean noGuessBoards = false;
+    BoardAnalytics(int height, int width, int mines, long seed){
+        MineField.validate(height, width, mines);
+        this.height = height;
+        this.width = width;
+        this.mines = mines;
+        this.name = height + "x" + width + "x" + mines;
+        this.seed = seed;
+        this.corpus = null;
+    }
+    BoardAnalytics(BoardCorpus corpus, String name){
+        this.height = corpus.getHeight();
+        this.width = corpus.getWidth();
+        this.mines = corpus.getMines();
+        this.name = name;
+        this.seed = 0;
+        this.corpus = corpus;
+    }
+    BoardAnalytics solve(boolean solve){
+        this.solve = solve;
+        return this;
+    }
+    BoardAnalytics noGuessBoards(boolean noGuessBoards){
+        this.noGuessBoards = noGuessBoards;
+        return this;
+    }
+    // counts of each value seen, grown on demand
+    static class Distribution{
+        private long[] counts = new long[16];
+        private long total = 0;
+        private long sum = 0;
+        private void add(int value){
+            if(value>=counts.length) counts = Arrays.copyOf(counts, Math.max(value + 1, counts.length*2));
+            counts[value]++;
+            total++;
+            sum += value;
+        }
+        private void merge(Distribution other){
+            if(other.counts.length>counts.length) counts = Arrays.copyOf(counts, other.counts.length);
+            for(int v = 0;v<other.counts.length;v++) counts[v] += other.counts[v];
+            total += other.total;
+            sum += other.sum;
+        }
+        double mean(){
+            return total==0? 0: (double)sum/total;
+        }
+        int percentile(double p){
+            long rank = (long)Math.ceil(p*total);
+            long seen = 0;
+            for(int v = 0;v<counts.length;v++){
+                seen += counts[v];
+                if(seen>=rank&&seen>0) return v;
+            }
+            return 0;
+        }
+        private void write(PrintStream out, String metric){
+            for(int v = 0;v<counts.length;v++){
+                if(counts[v]>0) out.printf(Locale.ROOT, "%s,%d,%d%n", metric, v, counts[v]);
+            }
+        }
+    }
+    // the running totals of one worker, with scratch space reused for every board it analyses
+    class Stats{
+        private long boards = 0;
+        private long needsGuessing = 0;
+        private final Distribution threeBV = new Distribution();
+        private final Distribution openings = new Distribution();
+        private final Distribution openingSize = new Distribution();
+        private final Distribution isolated = new Distribution();
+        private byte[] values;
+        private int[] seen;
+        private int[] queue;
+        // every flood marks with a new stamp, so seen never has to be cleared
+        private int stamp = 0;
+        private void analyze(long board){
+            MineField field;
+            if(corpus==null){
+                field = new MineField(height, width, mines, seed + board*GAMMA);
+                field.setNoGuess(noGuessBoards);
+                field.generate(width/2, height/2);
+            }else{
+                field = corpus.field(board);
+            }
+            if(values==null){
+                values = new byte[height*width];
+                seen = new int[height*width];
+                queue = new int[height*width];
+            }
+            Grid.count(field.getMineBitmap(), values, height, width);
+            if(stamp>Integer.MAX_VALUE - values.length){
+                Arrays.fill(seen, 0);
+                stamp = 0;
+            }
+            int first = stamp + 1;
+            int openingCount = 0;
+            int isolatedCount = 0;
+            for(int i = 0;i<values.length;i++){
+                if(values[i]==0&&seen[i]<first){
+                    openingCount++;
+                    openingSize.add(flood(i));
+                }
+            }
+            // a number next to no opening is a click of its own
+            for(int i = 0;i<values.length;i++){
+                if(values[i]!=0&&values[i]!=Grid.MINE&&seen[i]<first) isolatedCount++;
+            }
+            boards++;
+            openings.add(openingCount);
+            isolated.add(isolatedCount);
+            threeBV.add(openingCount + isolatedCount);
+            if(solve&&!NoGuessGenerator.isSolvable(field)) needsGuessing++;
+        }
+        // marks the cells an opening reveals, the numbers around it included, and returns how many
+        // there are; a number between two openings counts for both
+        private int flood(int start){
+            stamp++;
+            int head = 0;
+            int tail = 0;
+            seen[start] = stamp;
+            queue[tail++] = start;
+            while(head<tail){
+                int cell = queue[head++];
+                if(values[cell]!=0) continue;
+                for(int d = 0;d<8;d++){
+                    int n = Grid.neighborOf(cell, d, height, width);
+                    if(n<0||seen[n]==stamp) continue;
+                    seen[n] = stamp;
+                    queue[tail++] = n;
+                }
+            }
+            return tail;
+        }
+        private void merge(Stats other){
+            boards += other.boards;
+            needsGuessing += other.needsGuessing;
+            threeBV.merge(other.threeBV);
+            openings.merge(other.openings);
+            openingSize.merge(other.openingSize);
+            isolated.merge(other.isolated);
+        }
+        double guessRate(){
+            return boards==0? 0: (double)needsGuessing/boards;
+        }
+    }
+    // prints a summary row after every chunk and, if out is set, rewrites the distributions there
+    Stats run(long boards, PrintStream summary, Path out) throws IOException{
+        if(corpus!=null) boards = Math.min(boards, corpus.size());
+        Stats total = new Stats();
+        long start = System.nanoTime();
+        for(long done = 0;done<boards;){
+            long from = done;
+            int size = (int)Math.min(CHUNK, boards - done);
+            Stats chunk = IntStream.range(0, size).parallel()
+                    .collect(Stats::new, (stats, i)->stats.analyze(from + i), Stats::merge);
+            total.merge(chunk);
+            done += size;
+            summary.printf(Locale.ROOT, "%s,%d,%.2f,%d,%d,%d,%.3f,%.2f,%.3f,%s,%.1f%n", name, total.boards,
+                    total.threeBV.mean(), total.threeBV.percentile(0.1), total.threeBV.percentile(0.5),
+                    total.threeBV.percentile(0.9), total.openings.mean(), total.openingSize.mean(), total.isolated.mean(),
+                    solve? String.format(Locale.ROOT, "%.6f", total.guessRate()): "", total.boards/((System.nanoTime() - start)/1e9));
+            summary.flush();
+            if(out!=null) write(total, out);
+        }
+        return total;
+    }
+    // written beside the target and moved over it, so a reader never sees half a file
+    private void write(Stats stats, Path out) throws IOException{
+        Path temporary = out.resolveSibling(out.getFileName() + ".tmp");
+        try(PrintStream file = new PrintStream(Files.newOutputStream(temporary), false, "UTF-8")){
+            file.println("metric,value,count");
+            stats.threeBV.write(file, "3bv");
+            stats.openings.write(file, "openings");
+            stats.openingSize.write(file, "opening_size");
+            stats.isolated.write(file, "isolated");
+            if(solve){
+                file.printf(Locale.ROOT, "needs_guessing,1,%d%n", stats.needsGuessing);
+                file.printf(Locale.ROOT, "needs_guessing,0,%d%n", stats.boards - stats.needsGuessing);
+            }
+        }
+        Files.move(temporary, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    // usage: java BoardAnalytics [boards] [BEGINNER|INTERMEDIATE|ADVANCED|HxWxM] [--corpus file] [--seed n]
+    //        [--no-guess] [--no-solve] [--out file]
+    public static void main(String[] args) throws IOException{
+        long boards = 10000;
+        long seed = System.nanoTime();
+        String board = MineField.Difficulty.ADVANCED.name();
+        String corpusFile = null;
+        Path out = null;
+        boolean solve = true;
+        boolean noGuessBoards = false;
+        for(int i = 0;i<args.length;i++){
+            if(args[i].equals("--seed")){
+                seed = Long.parseLong(args[++i]);
+            }else if(args[i].equals("--corpus")){
+                corpusFile = args[++i];
+            }else if(args[i].equals("--out")){
+                out = Paths.get(args[++i]);
+            }else if(args[i].equals("--no-solve")){
+                solve = false;
+            }else if(args[i].equals("--no-guess")){
+                noGuessBoards = true;
+            }else if(args[i].matches("\\d+")){
+                boards = Long.parseLong(args[i]);
+            }else{
+                board = args[i];
+            }
+        }
+        System.out.println("board,boards,mean_3bv,p10_3bv,p50_3bv,p90_3bv,mean_openings,mean_opening_size,mean_isolated,needs_guessing,boards_per_sec");
+        if(corpusFile!=null){
+            try(BoardCorpus corpus = BoardCorpus.open(Paths.get(corpusFile))){
+                new BoardAnalytics(corpus, corpusFile).solve(solve).run(boards, System.out, out);
+            }
+            return;
+        }
+        MineField sample;
+        if(board.matches("\\d+x\\d+x\\d+")){
+            String[] size = board.split("x");
+            sample = new MineField(Integer.parseInt(size[0]), Integer.parseInt(size[1]), Integer.parseInt(size[2]));
+        }else{
+            sample = new MineField(MineField.Difficulty.valueOf(board));
+        }
+        new BoardAnalytics(sample.getHeight(), sample.getWidth(), sample.getMines(), seed).solve(solve)
+                .noGuessBoards(noGuessBoards).run(boards, System.out, out);
+    }
+}
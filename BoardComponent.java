@@ -0,0 +1,143 @@
+import javax.swing.*;
+import javax.swing.border.BevelBorder;
+import javax.swing.border.Border;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+// Paints the whole board from cached tile images, one per look of a cell.
+class BoardComponent extends JComponent{
+    private static final long serialVersionUID = 1L;
+    private static final Color ENTERED_COLOR = new Color(70, 160, 70);
+    private static final Color COVERED_COLOR = new Color(30, 120, 30);
+    private static final Color REMOVED_COLOR = new Color(140, 200, 140);
+    private static final MineField.CellView[] VIEWS = MineField.CellView.values();
+    // the heatmap overlay: red as strong as the mine probability, blue for cells certainly safe
+    private static final int TINT_LEVELS = 32;
+    private static final Color[] TINTS = new Color[TINT_LEVELS + 1];
+    private static final Color SAFE_TINT = new Color(80, 160, 255, 140);
+    static{
+        for(int level = 0;level<=TINT_LEVELS;level++) TINTS[level] = new Color(255, 0, 0, level*180/TINT_LEVELS);
+    }
+    private final MineField game;
+    private final int cellSize;
+    private final int height;
+    private final int width;
+    // [view][secured][entered]
+    private final Image[][][] tiles = new Image[VIEWS.length][2][2];
+    private int enteredX = -1;
+    private int enteredY = -1;
+    // null while the overlay is off
+    private double[] probabilities = null;
+    BoardComponent(MineField game, int cellSize){
+        this.game = game;
+        this.cellSize = cellSize;
+        this.height = game.getHeight();
+        this.width = game.getWidth();
+        setOpaque(true);
+        setPreferredSize(new Dimension(cellSize*width, cellSize*height));
+    }
+    private static class Style{
+        private final String text;
+        private final Border border;
+        private final Color background;
+        private final Color foreground;
+        private Style(String text, Color color, boolean covered){
+            this.text = text;
+            this.border = new BevelBorder(covered? BevelBorder.RAISED: BevelBorder.LOWERED);
+            this.background = covered? COVERED_COLOR: REMOVED_COLOR;
+            this.foreground = color;
+        }
+    }
+    private static Style getStyleOf(MineField.CellView view, boolean secured){
+        switch(view){
+            case M0: return new Style("　", Color.BLACK, false);
+            case M1: return new Style("１", new Color(51, 102, 204), false);
+            case M2: return new Style("２", new Color(0, 153, 51), false);
+            case M3: return new Style("３", new Color(204, 51, 0), false);
+            case M4: return new Style("４", new Color(0, 51, 153), false);
+            case M5: return new Style("５", new Color(102, 0, 0), false);
+            case M6: return new Style("６", new Color(31, 184, 133), false);
+            case M7: return new Style("７", new Color(204, 0, 51), false);
+            case M8: return new Style("８", new Color(30, 0, 0), false);
+            case MINE: return new Style("※", Color.RED, false);
+            case COVERED: return new Style("　", Color.BLACK, true);
+            case STILL_COVERED: return new Style("☓", secured?Color.BLACK:Color.WHITE, true);
+            case FLAGGED: return new Style("▼", secured?Color.BLACK:Color.RED, true);
+            case MISS_FLAGGED: return new Style("▽", Color.RED, true);
+            default: throw new IllegalArgumentException();
+        }
+    }
+    // tiles are drawn once by a label, so they look exactly like the per cell labels used to
+    private Image tileOf(MineField.CellView view, boolean secured, boolean entered){
+        Image tile = tiles[view.ordinal()][secured? 1: 0][entered? 1: 0];
+        if(tile==null){
+            Style style = getStyleOf(view, secured);
+            JLabel label = new JLabel(style.text, SwingConstants.CENTER);
+            label.setOpaque(true);
+            label.setFont(getFont());
+            label.setBorder(style.border);
+            label.setForeground(style.foreground);
+            label.setBackground(entered? ENTERED_COLOR: style.background);
+            label.setSize(cellSize, cellSize);
+            BufferedImage image = new BufferedImage(cellSize, cellSize, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            label.paint(g);
+            g.dispose();
+            tiles[view.ordinal()][secured? 1: 0][entered? 1: 0] = tile = image;
+        }
+        return tile;
+    }
+    @Override
+    protected void paintComponent(Graphics g){
+        Rectangle clip = g.getClipBounds();
+        if(clip==null) clip = new Rectangle(0, 0, cellSize*width, cellSize*height);
+        int x0 = Math.max(0, clip.x/cellSize);
+        int y0 = Math.max(0, clip.y/cellSize);
+        int x1 = Math.min(width - 1, (clip.x + clip.width - 1)/cellSize);
+        int y1 = Math.min(height - 1, (clip.y + clip.height - 1)/cellSize);
+        boolean secured = game.isSecured();
+        boolean finished = game.isFinished();
+        for(int y = y0;y<=y1;y++){
+            for(int x = x0;x<=x1;x++){
+                MineField.CellView view = game.getViewOf(x, y);
+                boolean entered = x==enteredX&&y==enteredY&&!finished&&view==MineField.CellView.COVERED;
+                g.drawImage(tileOf(view, secured, entered), x*cellSize, y*cellSize, null);
+                if(finished||view!=MineField.CellView.COVERED) continue;
+                int tint = tintOf(probabilities, x + y*width);
+                if(tint<0) continue;
+                g.setColor(tint==0&&probabilities[x + y*width]==0? SAFE_TINT: TINTS[tint]);
+                g.fillRect(x*cellSize, y*cellSize, cellSize, cellSize);
+            }
+        }
+    }
+    // the cell under a point as {x, y}, or null outside the board
+    int[] cellAt(Point point){
+        int x = Math.floorDiv(point.x, cellSize);
+        int y = Math.floorDiv(point.y, cellSize);
+        return x>=0&&x<width&&y>=0&&y<height? new int[]{x, y}: null;
+    }
+    void repaintCell(int x, int y){
+        repaint(x*cellSize, y*cellSize, cellSize, cellSize);
+    }
+    private static int tintOf(double[] probabilities, int index){
+        if(probabilities==null||Double.isNaN(probabilities[index])) return -1;
+        return Math.max(0, Math.min(TINT_LEVELS, (int)Math.round(probabilities[index]*TINT_LEVELS)));
+    }
+    // null turns the overlay off; only cells whose tint changes are painted again
+    void setProbabilities(double[] probabilities){
+        double[] before = this.probabilities;
+        this.probabilities = probabilities;
+        for(int i = 0;i<width*height;i++){
+            if(tintOf(before, i)!=tintOf(probabilities, i)||before!=null&&probabilities!=null&&(before[i]==0)!=(probabilities[i]==0)){
+                repaintCell(i%width, i/width);
+            }
+        }
+    }
+    void setEntered(int x, int y){
+        if(x==enteredX&&y==enteredY) return;
+        if(enteredX>=0) repaintCell(enteredX, enteredY);
+        enteredX = x;
+        enteredY = y;
+        if(enteredX>=0) repaintCell(enteredX, enteredY);
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// A file of board layouts of one size: a 32 byte header (magic, version, height, width, mines,
+// reserved, board count) followed by fixed size records (seed, first click, mine bitmap).
+// Records are read straight from the memory mapped file.
+class BoardCorpus implements Closeable{
+    private static final int MAGIC = 0x524D5343; // "RMSC"
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private final FileChannel channel;
+    private final int height;
+    private final int width;
+    private final int mines;
+    private final int words;
+    private final int recordSize;
+    private final long count;
+    // each mapping holds whole records and stays below the 2GB limit of a buffer
+    private final MappedByteBuffer[] segments;
+    private final int perSegment;
+    private BoardCorpus(FileChannel channel) throws IOException{
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while(header.hasRemaining()&&channel.read(header, header.position())>=0);
+        header.flip();
+        if(header.remaining()<HEADER||header.getInt()!=MAGIC) throw new IOException("not a board corpus");
+        if(header.getInt()!=VERSION) throw new IOException("unsupported corpus version");
+        this.height = header.getInt();
+        this.width = header.getInt();
+        this.mines = header.getInt();
+        header.getInt();
+        this.count = header.getLong();
+        this.words = wordsOf(height, width);
+        this.recordSize = recordSizeOf(words);
+        if(channel.size()<HEADER + count*recordSize) throw new IOException("truncated corpus");
+        this.perSegment = Integer.MAX_VALUE/recordSize;
+        this.segments = new MappedByteBuffer[(int)((count + perSegment - 1)/perSegment)];
+        for(int s = 0;s<segments.length;s++){
+            long first = (long)s*perSegment;
+            long size = Math.min(perSegment, count - first)*recordSize;
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + first*recordSize, size);
+        }
+    }
+    static BoardCorpus open(Path path) throws IOException{
+        return new BoardCorpus(FileChannel.open(path, StandardOpenOption.READ));
+    }
+    private static int wordsOf(int height, int width){
+        return (int)(((long)height*width + 63)/64);
+    }
+    private static int recordSizeOf(int words){
+        return 8 + 4 + 8*words;
+    }
+    private ByteBuffer segmentOf(long board){
+        if(board<0||board>=count) throw new IndexOutOfBoundsException("" + board);
+        return segments[(int)(board/perSegment)];
+    }
+    private int offsetOf(long board){
+        return (int)(board%perSegment)*recordSize;
+    }
+    long size(){
+        return count;
+    }
+    int getHeight(){
+        return height;
+    }
+    int getWidth(){
+        return width;
+    }
+    int getMines(){
+        return mines;
+    }
+    long seedOf(long board){
+        return segmentOf(board).getLong(offsetOf(board));
+    }
+    int firstClickOf(long board){
+        return segmentOf(board).getInt(offsetOf(board) + 8);
+    }
+    boolean isMine(long board, int cell){
+        long word = segmentOf(board).getLong(offsetOf(board) + 12 + (cell/64)*8);
+        return (word>>>(cell%64)&1)!=0;
+    }
+    // a generated board waiting for its first click
+    MineField field(long board){
+        ByteBuffer segment = segmentOf(board);
+        int offset = offsetOf(board);
+        long[] bitmap = new long[words];
+        for(int w = 0;w<words;w++) bitmap[w] = segment.getLong(offset + 12 + w*8);
+        return new MineField(height, width, bitmap, segment.getLong(offset), segment.getInt(offset + 8));
+    }
+    @Override
+    public void close() throws IOException{
+        channel.close();
+    }
+    static class Writer implements Closeable{
+        private static final int BUFFER_SIZE = 1<<20;
+        private final FileChannel channel;
+        private final int height;
+        private final int width;
+        private final int mines;
+        private final ByteBuffer buffer;
+        private long count = 0;
+        private Writer(FileChannel channel, int height, int width, int mines){
+            this.channel = channel;
+            this.height = height;
+            this.width = width;
+            this.mines = mines;
+            this.buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, recordSizeOf(wordsOf(height, width))));
+        }
+        void add(MineField field) throws IOException{
+            if(field.getHeight()!=height||field.getWidth()!=width||field.getMines()!=mines){
+                throw new IllegalArgumentException("board size differs from the corpus");
+            }
+            if(field.getFirstClick()<0) throw new IllegalArgumentException("board is not generated yet");
+            long[] bitmap = field.getMineBitmap();
+            if(buffer.remaining()<recordSizeOf(bitmap.length)) flush();
+            buffer.putLong(field.getSeed());
+            buffer.putInt(field.getFirstClick());
+            for(long word: bitmap) buffer.putLong(word);
+            count++;
+        }
+        private void flush() throws IOException{
+            buffer.flip();
+            while(buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+        @Override
+        public void close() throws IOException{
+            try{
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).putInt(VERSION).putInt(height).putInt(width).putInt(mines).putInt(0).putLong(count);
+                header.flip();
+                while(header.hasRemaining()) channel.write(header, header.position());
+            }finally{
+                channel.close();
+            }
+        }
+    }
+    static Writer create(Path path, int height, int width, int mines) throws IOException{
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(HEADER);
+        return new Writer(channel, height, width, mines);
+    }
+    // usage: java BoardCorpus file games [BEGINNER|INTERMEDIATE|ADVANCED|HxWxM] [--seed n]
+    // writes boards generated around a first click at the center
+    public static void main(String[] args) throws IOException{
+        long seed = System.nanoTime();
+        String board = MineField.Difficulty.ADVANCED.name();
+        if(args.length<2) throw new IllegalArgumentException("usage: java BoardCorpus file games [board] [--seed n]");
+        for(int i = 2;i<args.length;i++){
+            if(args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+            else board = args[i];
+        }
+        MineField sample;
+        if(board.matches("\\d+x\\d+x\\d+")){
+            String[] size = board.split("x");
+            sample = new MineField(Integer.parseInt(size[0]), Integer.parseInt(size[1]), Integer.parseInt(size[2]));
+        }else{
+            sample = new MineField(MineField.Difficulty.valueOf(board));
+        }
+        int height = sample.getHeight();
+        int width = sample.getWidth();
+        long games = Long.parseLong(args[1]);
+        try(Writer writer = create(Paths.get(args[0]), height, width, sample.getMines())){
+            for(long i = 0;i<games;i++){
+                MineField field = new MineField(height, width, sample.getMines(), seed + i*0x9E3779B97F4A7C15L);
+                field.generate(width/2, height/2);
+                writer.add(field);
+            }
+        }
+    }
+}
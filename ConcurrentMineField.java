@@ -0,0 +1,168 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+// A board that any number of threads may play at once, for a shared co-op board.
+// Cells are packed as in Grid, and every face change is a compare-and-set, so each cell
+// is opened or flagged by exactly one caller and counted exactly once. Large cascades spread
+// over the common pool one breadth-first level at a time.
+// MineField itself stays single threaded; a game is generated there and shared from here on.
+class ConcurrentMineField{
+    private static final int RUNNING = 0;
+    private static final int EXPLODED = 1;
+    private static final int SECURED = 2;
+    // a cascade goes parallel once one of its levels holds this many cells
+    private static final int PARALLEL_LEVEL = 2048;
+    private static final int[] NONE = new int[0];
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final MineField.CellView[] VIEWS = MineField.CellView.values();
+    // packed as in Grid, the values are fixed after construction
+    private final byte[] cells;
+    private final int height;
+    private final int width;
+    private final int mines;
+    private final AtomicInteger status = new AtomicInteger(RUNNING);
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicInteger flagCount = new AtomicInteger();
+    // takes over a generated board in whatever state it is in
+    ConcurrentMineField(MineField source){
+        if(source.getFirstClick()<0) throw new IllegalArgumentException("board is not generated yet");
+        if(source.isFinished()) throw new IllegalArgumentException("game is already over");
+        this.height = source.getHeight();
+        this.width = source.getWidth();
+        this.mines = source.getMines();
+        this.cells = new byte[height*width];
+        Grid.count(source.getMineBitmap(), cells, height, width);
+        for(int i = 0;i<cells.length;i++){
+            MineField.CellView view = source.getViewOf(i);
+            if(view==MineField.CellView.FLAGGED){
+                cells[i] |= Grid.FLAGGED;
+                flagCount.incrementAndGet();
+            }else if(view!=MineField.CellView.COVERED){
+                cells[i] |= Grid.REMOVED;
+            }
+        }
+        openCount.set(source.getOpenCount());
+    }
+    private int cellOf(int index){
+        return (byte)CELLS.getAcquire(cells, index);
+    }
+    // sets the face if it still is expect, the value bits never change
+    private boolean changeFace(int index, int expect, int face){
+        int value = cells[index]&Grid.VALUE_MASK;
+        return CELLS.compareAndSet(cells, index, (byte)(value|expect), (byte)(value|face));
+    }
+    // returns the cells this call revealed, cells revealed by other callers at the same time are not included
+    int[] open(int x, int y){
+        if(status.get()!=RUNNING) return NONE;
+        int target = x + y*width;
+        if(!reveal(target)) return NONE;
+        if((cells[target]&Grid.VALUE_MASK)!=0) return new int[]{target};
+        IntList revealed = new IntList();
+        revealed.add(target);
+        int[] level = {target};
+        while(level.length>0){
+            if(level.length<PARALLEL_LEVEL){
+                IntList next = new IntList();
+                for(int cell: level) expand(cell, next);
+                level = next.toArray();
+            }else{
+                level = IntStream.of(level).parallel().flatMap(cell->{
+                    IntList next = new IntList(8);
+                    expand(cell, next);
+                    return IntStream.of(next.toArray());
+                }).toArray();
+            }
+            for(int cell: level) revealed.add(cell);
+        }
+        return revealed.toArray();
+    }
+    // reveals the covered neighbors of an empty cell, adding those this thread won to next
+    private void expand(int cell, IntList next){
+        if((cells[cell]&Grid.VALUE_MASK)!=0) return;
+        for(int d = 0;d<8;d++){
+            int n = Grid.neighborOf(cell, d, height, width);
+            if(n>=0&&reveal(n)) next.add(n);
+        }
+    }
+    private boolean reveal(int target){
+        if(!changeFace(target, Grid.DEFAULT, Grid.REMOVED)) return false;
+        if((cells[target]&Grid.VALUE_MASK)==Grid.MINE){
+            status.compareAndSet(RUNNING, EXPLODED);
+        }else if(openCount.incrementAndGet()==cells.length - mines){
+            status.compareAndSet(RUNNING, SECURED);
+        }
+        return true;
+    }
+    // returns false if another caller changed the cell first or it is already open
+    boolean toggleFlag(int x, int y){
+        if(status.get()!=RUNNING) return false;
+        int target = x + y*width;
+        if(changeFace(target, Grid.DEFAULT, Grid.FLAGGED)){
+            flagCount.incrementAndGet();
+            return true;
+        }
+        if(changeFace(target, Grid.FLAGGED, Grid.DEFAULT)){
+            flagCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+    int[] flagOpen(int x, int y){
+        if(status.get()!=RUNNING) return NONE;
+        int target = x + y*width;
+        int cell = cellOf(target);
+        if((cell&Grid.FACE_MASK)!=Grid.REMOVED) return NONE;
+        int flagged = 0;
+        for(int d = 0;d<8;d++){
+            int n = Grid.neighborOf(target, d, height, width);
+            if(n>=0&&(cellOf(n)&Grid.FACE_MASK)==Grid.FLAGGED) flagged++;
+        }
+        if((cell&Grid.VALUE_MASK)!=flagged) return NONE;
+        IntList revealed = new IntList();
+        for(int d = 0;d<8;d++){
+            int n = Grid.neighborOf(target, d, height, width);
+            if(n<0) continue;
+            for(int r: open(n%width, n/width)) revealed.add(r);
+        }
+        return revealed.toArray();
+    }
+    MineField.CellView getViewOf(int target){
+        int cell = cellOf(target);
+        boolean mine = (cell&Grid.VALUE_MASK)==Grid.MINE;
+        switch(cell&Grid.FACE_MASK){
+            case Grid.DEFAULT: return isFinished()&&mine? MineField.CellView.STILL_COVERED: MineField.CellView.COVERED;
+            case Grid.FLAGGED: return isFinished()&&!mine? MineField.CellView.MISS_FLAGGED: MineField.CellView.FLAGGED;
+            case Grid.REMOVED: return VIEWS[cell&Grid.VALUE_MASK];
+        }
+        throw new IllegalArgumentException();
+    }
+    MineField.CellView getViewOf(int x, int y){
+        return getViewOf(x + y*width);
+    }
+    boolean isFinished(){
+        return status.get()!=RUNNING;
+    }
+    boolean isSecured(){
+        return status.get()==SECURED;
+    }
+    boolean isRunning(){
+        return status.get()==RUNNING;
+    }
+    int getHeight(){
+        return height;
+    }
+    int getWidth(){
+        return width;
+    }
+    int getMines(){
+        return mines;
+    }
+    int getOpenCount(){
+        return openCount.get();
+    }
+    int getMineCount(){
+        return mines - flagCount.get();
+    }
+}
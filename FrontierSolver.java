@@ -0,0 +1,312 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class FrontierSolver{
+    // components that need more search nodes than this are left unsolved
+    private static final long NODE_BUDGET = 1L<<24;
+    private final int height;
+    private final int width;
+    // the components of the previous call, a component no move has touched since is not enumerated again
+    private Map<Component, Component> solvedBefore = new HashMap<>();
+    FrontierSolver(int height, int width){
+        this.height = height;
+        this.width = width;
+    }
+    private static boolean isNumber(int value){
+        return value>0&&value<9;
+    }
+    // covered cells sharing a number with each other, and the numbers constraining them
+    private static class Component{
+        private final int[] variables;
+        private final int[][] constraintsOf;
+        private final int[] need;
+        private final int[] free;
+        private final int[] assigned;
+        private double[] counts;
+        private double[][] mineCounts;
+        private long nodes = 0;
+        private boolean solved = false;
+        private final int hash;
+        private Component(int[] variables, int[][] constraintsOf, int[] need, int[] free){
+            this.variables = variables;
+            this.constraintsOf = constraintsOf;
+            this.need = need;
+            this.free = free;
+            this.assigned = new int[variables.length];
+            this.counts = new double[variables.length + 1];
+            this.mineCounts = new double[variables.length + 1][];
+            this.hash = 31*(31*Arrays.hashCode(variables) + Arrays.deepHashCode(constraintsOf)) + Arrays.hashCode(need);
+        }
+        // the same cells under the same numbers, so the same counts
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Component)) return false;
+            Component other = (Component)o;
+            return hash==other.hash&&Arrays.equals(variables, other.variables)&&Arrays.equals(need, other.need)
+                    &&Arrays.deepEquals(constraintsOf, other.constraintsOf);
+        }
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+        private void enumerate(){
+            solved = search(0, 0);
+            if(!solved) return;
+            // scale by the largest count so that the convolution in probabilities cannot overflow
+            double max = 0;
+            for(double count: counts) max = Math.max(max, count);
+            for(int k = 0;k<counts.length;k++){
+                counts[k] /= max;
+                if(mineCounts[k]!=null) for(int v = 0;v<variables.length;v++) mineCounts[k][v] /= max;
+            }
+        }
+        private boolean search(int v, int mines){
+            if(++nodes>NODE_BUDGET) return false;
+            if(v==variables.length){
+                counts[mines]++;
+                if(mineCounts[mines]==null) mineCounts[mines] = new double[variables.length];
+                for(int i = 0;i<variables.length;i++) mineCounts[mines][i] += assigned[i];
+                return true;
+            }
+            for(int value = 0;value<2;value++){
+                if(assign(v, value)&&!search(v + 1, mines + value)){
+                    unassign(v, value);
+                    return false;
+                }
+                unassign(v, value);
+            }
+            return true;
+        }
+        private boolean assign(int v, int value){
+            assigned[v] = value;
+            boolean consistent = true;
+            for(int c: constraintsOf[v]){
+                need[c] -= value;
+                free[c]--;
+                if(need[c]<0||need[c]>free[c]) consistent = false;
+            }
+            return consistent;
+        }
+        private void unassign(int v, int value){
+            for(int c: constraintsOf[v]){
+                need[c] += value;
+                free[c]++;
+            }
+            assigned[v] = 0;
+        }
+    }
+    // returns the chance of each covered cell being a mine given every number on the board
+    // and the total mine count, or NaN for cells that are not covered or could not be solved
+    double[] probabilities(int[] cells, int mines){
+        double[] result = new double[cells.length];
+        Arrays.fill(result, Double.NaN);
+        int rest = mines;
+        for(int value: cells) if(value==AutoMiner.FLAGGED) rest--;
+        List<Component> components = components(cells);
+        List<Component> touched = new ArrayList<>();
+        Map<Component, Component> solvedNow = new HashMap<>();
+        for(int c = 0;c<components.size();c++){
+            Component known = solvedBefore.get(components.get(c));
+            if(known!=null){
+                components.set(c, known);
+            }else{
+                touched.add(components.get(c));
+            }
+            solvedNow.put(components.get(c), components.get(c));
+        }
+        touched.parallelStream().forEach(Component::enumerate);
+        // kept only once enumerated, a failed call must not leave unsolved components behind
+        solvedBefore = solvedNow;
+        int interior = 0;
+        for(int value: cells) if(value==AutoMiner.COVERED) interior++;
+        List<Component> solved = new ArrayList<>();
+        for(Component component: components){
+            if(component.solved){
+                solved.add(component);
+                interior -= component.variables.length;
+            }
+        }
+        int total = 0;
+        for(Component component: solved) total += component.variables.length;
+        double[] weights = weights(interior, rest, total);
+        // prefixes.get(c) = mine count distribution of the components before c
+        List<double[]> prefixes = new ArrayList<>();
+        double[] prefix = {1};
+        for(Component component: solved){
+            prefixes.add(prefix);
+            prefix = normalize(convolve(prefix, component.counts));
+        }
+        double[] suffix = weights;
+        for(int c = solved.size() - 1;c>=0;c--){
+            Component component = solved.get(c);
+            double[] before = prefixes.get(c);
+            double[] weightOf = new double[component.counts.length];
+            double sum = 0;
+            for(int k = 0;k<weightOf.length;k++){
+                for(int a = 0;a<before.length&&a + k<suffix.length;a++) weightOf[k] += before[a]*suffix[a + k];
+                sum += component.counts[k]*weightOf[k];
+            }
+            for(int v = 0;v<component.variables.length;v++){
+                double p = 0;
+                for(int k = 0;k<weightOf.length;k++){
+                    if(component.mineCounts[k]!=null) p += component.mineCounts[k][v]*weightOf[k];
+                }
+                result[component.variables[v]] = p/sum;
+            }
+            suffix = normalize(absorb(component.counts, suffix));
+        }
+        if(interior>0){
+            double expected = 0;
+            double sum = 0;
+            for(int k = 0;k<prefix.length&&k<weights.length;k++){
+                sum += prefix[k]*weights[k];
+                expected += prefix[k]*weights[k]*(rest - k);
+            }
+            double p = expected/interior/sum;
+            for(int i = 0;i<cells.length;i++){
+                if(cells[i]==AutoMiner.COVERED&&Double.isNaN(result[i])) result[i] = p;
+            }
+            // components over the budget are counted with the interior for the weights,
+            // but their cells are constrained by numbers, so the interior chance says nothing about them
+            for(Component component: components){
+                if(!component.solved) for(int cell: component.variables) result[cell] = Double.NaN;
+            }
+        }
+        return result;
+    }
+    private List<Component> components(int[] cells){
+        int[] variableOf = new int[cells.length];
+        Arrays.fill(variableOf, -1);
+        IntList variables = new IntList();
+        IntList constraints = new IntList();
+        for(int i = 0;i<cells.length;i++){
+            if(!isNumber(cells[i])) continue;
+            boolean constraining = false;
+            for(int d = 0;d<8;d++){
+                int n = Grid.neighborOf(i, d, height, width);
+                if(n<0||cells[n]!=AutoMiner.COVERED) continue;
+                constraining = true;
+                if(variableOf[n]<0){
+                    variableOf[n] = variables.size();
+                    variables.add(n);
+                }
+            }
+            if(constraining) constraints.add(i);
+        }
+        int[] parent = new int[variables.size()];
+        for(int v = 0;v<parent.length;v++) parent[v] = v;
+        for(int c = 0;c<constraints.size();c++){
+            int first = -1;
+            for(int d = 0;d<8;d++){
+                int n = Grid.neighborOf(constraints.get(c), d, height, width);
+                if(n<0||variableOf[n]<0) continue;
+                if(first<0) first = find(parent, variableOf[n]);
+                else parent[find(parent, variableOf[n])] = first;
+            }
+        }
+        // group variables by root, keeping the discovery order so that neighbors are assigned close together
+        int[] componentOf = new int[parent.length];
+        Arrays.fill(componentOf, -1);
+        List<IntList> members = new ArrayList<>();
+        List<IntList> numbers = new ArrayList<>();
+        for(int v = 0;v<parent.length;v++){
+            int root = find(parent, v);
+            if(componentOf[root]<0){
+                componentOf[root] = members.size();
+                members.add(new IntList());
+                numbers.add(new IntList());
+            }
+            members.get(componentOf[root]).add(v);
+        }
+        for(int c = 0;c<constraints.size();c++){
+            for(int d = 0;d<8;d++){
+                int n = Grid.neighborOf(constraints.get(c), d, height, width);
+                if(n<0||variableOf[n]<0) continue;
+                numbers.get(componentOf[find(parent, variableOf[n])]).add(constraints.get(c));
+                break;
+            }
+        }
+        int[] local = new int[parent.length];
+        List<Component> components = new ArrayList<>();
+        for(int m = 0;m<members.size();m++){
+            IntList member = members.get(m);
+            IntList number = numbers.get(m);
+            int[] vars = new int[member.size()];
+            for(int v = 0;v<vars.length;v++){
+                vars[v] = variables.get(member.get(v));
+                local[member.get(v)] = v;
+            }
+            int[] need = new int[number.size()];
+            int[] free = new int[number.size()];
+            IntList[] constraintsOf = new IntList[vars.length];
+            for(int v = 0;v<vars.length;v++) constraintsOf[v] = new IntList(4);
+            for(int c = 0;c<number.size();c++){
+                int index = number.get(c);
+                need[c] = cells[index];
+                for(int d = 0;d<8;d++){
+                    int n = Grid.neighborOf(index, d, height, width);
+                    if(n<0) continue;
+                    if(cells[n]==AutoMiner.FLAGGED) need[c]--;
+                    if(variableOf[n]>=0){
+                        free[c]++;
+                        constraintsOf[local[variableOf[n]]].add(c);
+                    }
+                }
+            }
+            int[][] table = new int[vars.length][];
+            for(int v = 0;v<vars.length;v++) table[v] = constraintsOf[v].toArray();
+            components.add(new Component(vars, table, need, free));
+        }
+        return components;
+    }
+    private static int find(int[] parent, int v){
+        while(parent[v]!=v){
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+    // weights[k] is proportional to the number of ways to place the other rest - k mines
+    // among the interior cells, i.e. C(interior, rest - k)
+    private static double[] weights(int interior, int rest, int total){
+        double[] log = new double[total + 1];
+        Arrays.fill(log, Double.NEGATIVE_INFINITY);
+        int low = Math.max(0, rest - total);
+        // log C(interior, r) relative to log C(interior, low), using C(n, r + 1) = C(n, r)*(n - r)/(r + 1)
+        double value = 0;
+        double max = Double.NEGATIVE_INFINITY;
+        for(int r = low;r<=Math.min(rest, interior);r++){
+            if(r>low) value += Math.log(interior - r + 1) - Math.log(r);
+            log[rest - r] = value;
+            max = Math.max(max, value);
+        }
+        double[] weights = new double[total + 1];
+        for(int k = 0;k<=total;k++) weights[k] = Math.exp(log[k] - max);
+        return weights;
+    }
+    private static double[] convolve(double[] a, double[] b){
+        double[] result = new double[a.length + b.length - 1];
+        for(int i = 0;i<a.length;i++){
+            if(a[i]==0) continue;
+            for(int j = 0;j<b.length;j++) result[i + j] += a[i]*b[j];
+        }
+        return result;
+    }
+    // folds a component into the weights of the components after it: result[j] = sum counts[k]*weights[j + k]
+    private static double[] absorb(double[] counts, double[] weights){
+        double[] result = new double[weights.length];
+        for(int j = 0;j<weights.length;j++){
+            for(int k = 0;k<counts.length&&j + k<weights.length;k++) result[j] += counts[k]*weights[j + k];
+        }
+        return result;
+    }
+    private static double[] normalize(double[] values){
+        double max = 0;
+        for(double value: values) max = Math.max(max, value);
+        if(max>0) for(int i = 0;i<values.length;i++) values[i] /= max;
+        return values;
+    }
+}
@@ -0,0 +1,273 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+// Serves MineField games over HTTP, answering in JSON:
+//   POST   /games?difficulty=BEGINNER or ?height=&width=&mines=  [&seed=] [&noGuess=true] [&shared=true]
+//   GET    /games/{id}                   every open or flagged cell
+//   POST   /games/{id}/open?x=&y=        also /flag and /chord (flagOpen)
+//   DELETE /games/{id}
+// Commands answer with the cells whose view changed, as [x, y, view] triples, and whether the board
+// is still known to need no guessing.
+// A shared game is a co-op board that any number of clients play at once: after the first click it
+// moves to a ConcurrentMineField, commands no longer take turns, each answers with the cells that
+// request itself changed, and GET shows the moves of everyone.
+// Games left alone for the idle timeout are dropped. Custom boards are limited in size and mine
+// density, and no-guess boards to a smaller size, since they are searched for on the request thread.
+class GameServer{
+    private static final int MAX_SESSIONS = 100000;
+    // custom boards are limited so that one request cannot take the memory or the time of many
+    private static final int MAX_CELLS = 1<<20;
+    private static final double MAX_DENSITY = 0.5;
+    // a no-guess board is searched for on the request thread
+    private static final int MAX_NO_GUESS_CELLS = 1<<14;
+    // requests beyond the pool and its queue run on the dispatcher thread, which holds back new connections
+    private static final int THREADS = 4*Runtime.getRuntime().availableProcessors();
+    private static final int QUEUE = 1024;
+    private static class Session{
+        private final MineField game;
+        private final boolean sharing;
+        // set once the first click of a shared game has generated the board
+        private volatile ConcurrentMineField shared = null;
+        private volatile long lastAccess = System.nanoTime();
+        private Session(MineField game, boolean sharing){
+            this.game = game;
+            this.sharing = sharing;
+            game.recordChanges();
+        }
+    }
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom ids = new SecureRandom();
+    private final long idleNanos;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService evictor;
+    GameServer(int port, long idleSeconds) throws IOException{
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        // JDK 17 has no virtual threads; blocking is short per request, so a bounded pool of platform
+        // threads is enough, and a burst of slow requests waits in the queue instead of adding threads
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE), new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r->{
+            Thread thread = new Thread(r, "session-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/games", this::handle);
+        server.setExecutor(executor);
+        long period = Math.max(1, idleSeconds/4);
+        evictor.scheduleAtFixedRate(this::evict, period, period, TimeUnit.SECONDS);
+    }
+    void start(){
+        server.start();
+    }
+    void stop(){
+        server.stop(0);
+        executor.shutdown();
+        evictor.shutdown();
+    }
+    int getPort(){
+        return server.getAddress().getPort();
+    }
+    int getSessionCount(){
+        return sessions.size();
+    }
+    private void evict(){
+        long now = System.nanoTime();
+        sessions.values().removeIf(session->now - session.lastAccess>idleNanos);
+    }
+    private void handle(HttpExchange exchange) throws IOException{
+        try{
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> query = parse(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+            // path[0] is empty and path[1] is "games"
+            if(path.length==2){
+                if(!method.equals("POST")) throw new HttpError(405, "method not allowed");
+                reply(exchange, 201, create(query));
+                return;
+            }
+            Session session = sessions.get(path[2]);
+            if(session==null) throw new HttpError(404, "no such game");
+            session.lastAccess = System.nanoTime();
+            if(path.length==3&&method.equals("DELETE")){
+                sessions.remove(path[2]);
+                reply(exchange, 200, "{}");
+            }else if(path.length==3&&method.equals("GET")){
+                reply(exchange, 200, board(session));
+            }else if(path.length==4&&method.equals("POST")){
+                reply(exchange, 200, command(session, path[3], query));
+            }else{
+                throw new HttpError(404, "not found");
+            }
+        }catch(HttpError e){
+            reply(exchange, e.code, error(e.getMessage()));
+        }catch(IllegalArgumentException e){
+            reply(exchange, 400, error(e.getMessage()));
+        }catch(RuntimeException e){
+            e.printStackTrace();
+            reply(exchange, 500, error("internal error"));
+        }
+    }
+    private static class HttpError extends RuntimeException{
+        private static final long serialVersionUID = 1L;
+        private final int code;
+        private HttpError(int code, String message){
+            super(message);
+            this.code = code;
+        }
+    }
+    private String create(Map<String, String> query){
+        if(sessions.size()>=MAX_SESSIONS) throw new HttpError(503, "too many games");
+        long seed = query.containsKey("seed")? Long.parseLong(query.get("seed")): ids.nextLong();
+        MineField game;
+        if(query.containsKey("difficulty")){
+            game = new MineField(MineField.Difficulty.valueOf(query.get("difficulty").toUpperCase(Locale.ROOT)), seed);
+        }else{
+            int height = intOf(query, "height");
+            int width = intOf(query, "width");
+            int mines = intOf(query, "mines");
+            long cells = (long)height*width;
+            if(height<=0||width<=0||cells>MAX_CELLS) throw new IllegalArgumentException("board larger than " + MAX_CELLS + " cells");
+            if(mines>cells*MAX_DENSITY) throw new IllegalArgumentException("more than " + MAX_DENSITY + " of the cells are mines");
+            game = new MineField(height, width, mines, seed);
+        }
+        boolean noGuess = Boolean.parseBoolean(query.get("noGuess"));
+        if(noGuess&&game.getHeight()*game.getWidth()>MAX_NO_GUESS_CELLS){
+            throw new IllegalArgumentException("no-guess boards are limited to " + MAX_NO_GUESS_CELLS + " cells");
+        }
+        game.setNoGuess(noGuess);
+        boolean sharing = Boolean.parseBoolean(query.get("shared"));
+        String id;
+        do{
+            id = Long.toHexString(ids.nextLong());
+        }while(sessions.putIfAbsent(id, new Session(game, sharing))!=null);
+        return String.format(Locale.ROOT, "{\"id\":\"%s\",\"height\":%d,\"width\":%d,\"mines\":%d,\"seed\":%d,\"shared\":%b}",
+                id, game.getHeight(), game.getWidth(), game.getMines(), game.getSeed(), sharing);
+    }
+    private static String command(Session session, String command, Map<String, String> query){
+        int x = intOf(query, "x");
+        int y = intOf(query, "y");
+        MineField game = session.game;
+        if(x<0||x>=game.getWidth()||y<0||y>=game.getHeight()) throw new IllegalArgumentException("cell out of the board");
+        ConcurrentMineField shared = session.shared;
+        if(shared==null){
+            // a game is single threaded, requests for one game take turns while different games run in parallel
+            synchronized(session){
+                shared = session.shared;
+                if(shared==null){
+                    switch(command){
+                        case "open": game.open(x, y); break;
+                        case "flag": game.toggleFlag(x, y); break;
+                        case "chord": game.flagOpen(x, y); break;
+                        default: throw new HttpError(404, "unknown command: " + command);
+                    }
+                    int[] changes = game.drainChanges();
+                    if(session.sharing&&game.isRunning()) session.shared = new ConcurrentMineField(game);
+                    return state(session, changes);
+                }
+            }
+        }
+        int[] changes;
+        switch(command){
+            case "open": changes = shared.open(x, y); break;
+            case "flag": changes = shared.toggleFlag(x, y)? new int[]{x + y*game.getWidth()}: new int[0]; break;
+            case "chord": changes = shared.flagOpen(x, y); break;
+            default: throw new HttpError(404, "unknown command: " + command);
+        }
+        return state(session, changes);
+    }
+    private static String board(Session session){
+        MineField game = session.game;
+        ConcurrentMineField shared = session.shared;
+        if(shared!=null) return state(session, shownOf(game.getHeight()*game.getWidth(), i->shared.getViewOf(i)));
+        synchronized(session){
+            return state(session, shownOf(game.getHeight()*game.getWidth(), i->game.getViewOf(i)));
+        }
+    }
+    private static int[] shownOf(int size, IntFunction<MineField.CellView> viewOf){
+        IntList shown = new IntList();
+        for(int i = 0;i<size;i++){
+            if(viewOf.apply(i)!=MineField.CellView.COVERED) shown.add(i);
+        }
+        return shown.toArray();
+    }
+    private static String state(Session session, int[] cells){
+        MineField game = session.game;
+        ConcurrentMineField shared = session.shared;
+        String status = shared==null? statusOf(game): shared.isRunning()? "RUNNING": shared.isSecured()? "WON": "LOST";
+        int mineCount = shared==null? game.getMineCount(): shared.getMineCount();
+        StringBuilder json = new StringBuilder();
+        json.append("{\"status\":\"").append(status).append("\",\"noGuess\":").append(game.isNoGuess())
+                .append(",\"mines\":").append(mineCount).append(",\"cells\":[");
+        for(int i = 0;i<cells.length;i++){
+            int index = cells[i];
+            json.append(i==0? "": ",").append('[').append(index%game.getWidth()).append(',').append(index/game.getWidth())
+                    .append(",\"").append(shared==null? game.getViewOf(index): shared.getViewOf(index)).append("\"]");
+        }
+        return json.append("]}").toString();
+    }
+    private static String statusOf(MineField game){
+        if(game.isDefault()) return "READY";
+        if(game.isRunning()) return "RUNNING";
+        return game.isSecured()? "WON": "LOST";
+    }
+    private static String error(String message){
+        return "{\"error\":\"" + String.valueOf(message).replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+    private static int intOf(Map<String, String> query, String key){
+        String value = query.get(key);
+        if(value==null) throw new IllegalArgumentException("missing parameter: " + key);
+        return Integer.parseInt(value);
+    }
+    private static Map<String, String> parse(String rawQuery){
+        Map<String, String> query = new HashMap<>();
+        if(rawQuery==null) return query;
+        for(String pair: rawQuery.split("&")){
+            int eq = pair.indexOf('=');
+            if(eq<0) continue;
+            query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+    private static void reply(HttpExchange exchange, int code, String body) throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try(OutputStream out = exchange.getResponseBody()){
+            out.write(bytes);
+        }
+    }
+    // usage: java GameServer [port] [--idle seconds]
+    public static void main(String[] args) throws IOException{
+        int port = 8080;
+        long idle = 600;
+        for(int i = 0;i<args.length;i++){
+            if(args[i].equals("--idle")) idle = Long.parseLong(args[++i]);
+            else port = Integer.parseInt(args[i]);
+        }
+        GameServer server = new GameServer(port, idle);
+        server.start();
+        System.out.println("listening on port " + server.getPort());
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// What every rectangular board shares: the packing of a cell into a byte, the eight directions and
+// the walk to a neighbor, laying mines out, and the numbers of a mine bitmap.
+class Grid{
+    // low nibble: value (0-8 or MINE), bits 4-5: face
+    static final int MINE = 9;
+    static final int VALUE_MASK = 0x0F;
+    static final int DEFAULT = 0x00;
+    static final int FLAGGED = 0x10;
+    static final int REMOVED = 0x20;
+    static final int FACE_MASK = 0x30;
+    static final int[] DX = {-1, 0, 1, -1, 1, -1, 0, 1};
+    static final int[] DY = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private Grid(){
+    }
+    // the cell next to index in a direction on a height x width board, -1 off the board
+    static int neighborOf(int index, int direction, int height, int width){
+        int x = index%width + DX[direction];
+        int y = index/width + DY[direction];
+        return x>=0&&x<width&&y>=0&&y<height? x + y*width: -1;
+    }
+    // count distinct cells out of size, none of them in excluded (ascending), in the order they are drawn;
+    // Floyd's form of the partial Fisher-Yates shuffle, so the draws depend on the seed alone
+    static int[] sample(int size, int count, int[] excluded, SplittableRandom random){
+        int allowed = size - excluded.length;
+        long[] chosen = new long[(size + 63)/64];
+        int[] placed = new int[count];
+        for(int j = allowed - count, m = 0;j<allowed;j++, m++){
+            int cell = allowedCell(random.nextInt(j + 1), excluded);
+            if((chosen[cell/64]>>>(cell%64)&1)!=0) cell = allowedCell(j, excluded);
+            chosen[cell/64] |= 1L<<(cell%64);
+            placed[m] = cell;
+        }
+        return placed;
+    }
+    // the rank-th cell not in excluded
+    private static int allowedCell(int rank, int[] excluded){
+        int cell = rank;
+        for(int s: excluded){
+            if(s<=cell) cell++;
+        }
+        return cell;
+    }
+    // fills values with MINE or the number of each cell of a mine bitmap (bit i of word i/64 set for a mine on cell i)
+    static void count(long[] bitmap, byte[] values, int height, int width){
+        Arrays.fill(values, (byte)0);
+        for(int w = 0;w<bitmap.length;w++){
+            for(long bits = bitmap[w];bits!=0;bits &= bits - 1) values[w*64 + Long.numberOfTrailingZeros(bits)] = MINE;
+        }
+        for(int w = 0;w<bitmap.length;w++){
+            for(long bits = bitmap[w];bits!=0;bits &= bits - 1){
+                int mine = w*64 + Long.numberOfTrailingZeros(bits);
+                for(int d = 0;d<8;d++){
+                    int n = neighborOf(mine, d, height, width);
+                    if(n>=0&&values[n]!=MINE) values[n]++;
+                }
+            }
+        }
+    }
+}
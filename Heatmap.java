@@ -0,0 +1,84 @@
+import javax.swing.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Mine probabilities of the covered cells for the board overlay, worked out off the event thread.
+// Changed cells are collected on the event thread and handed to the solver at most once per
+// THROTTLE_MS; while a pass runs, later changes only pile up for the next one, so a burst of clicks
+// costs one more pass, never a queue of outdated ones. The solver keeps the frontier components of
+// its previous pass, so only the components a move touched are enumerated again.
+// Every method must be called on the event thread.
+class Heatmap{
+    private static final int THROTTLE_MS = 100;
+    // one thread for the whole application, apart from autoplay so that neither waits for the other
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r->{
+        Thread thread = new Thread(r, "heatmap");
+        thread.setDaemon(true);
+        return thread;
+    });
+    interface Listener{
+        // the chance of each cell being a mine, NaN for cells that are not covered or not solved;
+        // null if the pass failed
+        void updated(double[] probabilities);
+    }
+    private final MineField game;
+    private final Listener listener;
+    private final FrontierSolver solver;
+    // the board in AutoMiner values, kept up to date from the change feed; the player's flags may be
+    // wrong, so as in AutoMiner they are kept as covered cells
+    private final int[] cells;
+    private final Timer throttle = new Timer(THROTTLE_MS, e->submit());
+    // a pass is running in the background or waiting to be delivered
+    private boolean busy = false;
+    // cells changed since the last pass was handed over
+    private boolean stale = true;
+    private boolean closed = false;
+    Heatmap(MineField game, Listener listener){
+        this.game = game;
+        this.listener = listener;
+        this.solver = new FrontierSolver(game.getHeight(), game.getWidth());
+        this.cells = new int[game.getHeight()*game.getWidth()];
+        for(int i = 0;i<cells.length;i++) cells[i] = valueOf(game.getViewOf(i));
+        throttle.setRepeats(false);
+        submit();
+    }
+    private static int valueOf(MineField.CellView view){
+        return view==MineField.CellView.FLAGGED? AutoMiner.COVERED: AutoMiner.getValueOf(view);
+    }
+    // indices are cells whose view changed, as drained from the game
+    void changed(int[] indices){
+        if(closed||indices.length==0) return;
+        for(int index: indices) cells[index] = valueOf(game.getViewOf(index));
+        stale = true;
+        if(!busy&&!throttle.isRunning()) throttle.start();
+    }
+    private void submit(){
+        if(closed||!stale||!game.isRunning()&&!game.isDefault()) return;
+        stale = false;
+        busy = true;
+        int[] view = cells.clone();
+        int mines = game.getMines();
+        EXECUTOR.execute(()->{
+            double[] probabilities = null;
+            try{
+                probabilities = solver.probabilities(view, mines);
+            }finally{
+                // a failed pass is delivered as null, which clears the overlay, and the exception
+                // still reaches the executor thread's handler
+                double[] delivered = probabilities;
+                SwingUtilities.invokeLater(()->deliver(delivered));
+            }
+        });
+    }
+    private void deliver(double[] probabilities){
+        busy = false;
+        if(closed) return;
+        listener.updated(probabilities);
+        if(stale) throttle.start();
+    }
+    // a pass still running is dropped when it finishes
+    void close(){
+        closed = true;
+        throttle.stop();
+    }
+}
@@ -0,0 +1,348 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// An unbounded board split into CHUNK x CHUNK chunks. A chunk's mines depend only on the world
+// seed and its coordinates, so chunks are generated when first reached and can be dropped and
+// rebuilt at any time; only the opened and flagged cells of a chunk have to be kept.
+// The 3x3 cells around (0, 0) never hold a mine, so a game starts by opening (0, 0).
+class InfiniteField{
+    private static final int CHUNK_BITS = 5;
+    private static final int CHUNK = 1<<CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK - 1;
+    private static final int CHUNK_CELLS = CHUNK*CHUNK;
+    private static final int WORDS = CHUNK_CELLS/64;
+    // below this density openings would percolate and a cascade could go on forever
+    private static final double MIN_DENSITY = 0.15;
+    private static final MineField.CellView[] VIEWS = MineField.CellView.values();
+    private enum Status{
+        READY,RUNNING,EXPLODED
+    }
+    private static class Chunk{
+        // packed as in Grid
+        private final byte[] cells = new byte[CHUNK_CELLS];
+        private int touched = 0;
+    }
+    private final long seed;
+    private final int minesPerChunk;
+    private final int hotLimit;
+    private Status status = Status.READY;
+    private long openCount = 0;
+    private long flagCount = 0;
+    // fully built chunks in access order, the eldest is packed into cold when over the limit
+    private final LinkedHashMap<Long, Chunk> hot;
+    // opened bitmap followed by flagged bitmap of chunks that were played on and then evicted
+    private final Map<Long, long[]> cold = new HashMap<>();
+    private final IntList queueX = new IntList();
+    private final IntList queueY = new IntList();
+    InfiniteField(long seed, double density, int hotLimit){
+        if(density<MIN_DENSITY||density>0.9) throw new IllegalArgumentException("density out of range: " + density);
+        if(hotLimit<9) throw new IllegalArgumentException("at least 9 hot chunks are needed");
+        this.seed = seed;
+        this.minesPerChunk = (int)Math.round(density*CHUNK_CELLS);
+        this.hotLimit = hotLimit;
+        this.hot = new LinkedHashMap<Long, Chunk>(hotLimit*2, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest){
+                if(size()<=InfiniteField.this.hotLimit) return false;
+                evict(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+    private static long keyOf(int cx, int cy){
+        return (long)cx<<32|(cy&0xFFFFFFFFL);
+    }
+    static long pack(int x, int y){
+        return keyOf(x, y);
+    }
+    static int xOf(long packed){
+        return (int)(packed>>32);
+    }
+    static int yOf(long packed){
+        return (int)packed;
+    }
+    private void evict(long key, Chunk chunk){
+        if(chunk.touched==0) return;
+        long[] faces = new long[WORDS*2];
+        for(int i = 0;i<CHUNK_CELLS;i++){
+            int face = chunk.cells[i]&Grid.FACE_MASK;
+            if(face==Grid.REMOVED) faces[i/64] |= 1L<<(i%64);
+            if(face==Grid.FLAGGED) faces[WORDS + i/64] |= 1L<<(i%64);
+        }
+        cold.put(key, faces);
+    }
+    // mine bitmap of a chunk, a pure function of the seed and the chunk coordinates
+    private long[] minesOf(int cx, int cy){
+        SplittableRandom random = new SplittableRandom(seed^keyOf(cx, cy)*0x9E3779B97F4A7C15L);
+        long[] mines = new long[WORDS];
+        IntList safe = new IntList(9);
+        for(int y = -1;y<=1;y++){
+            for(int x = -1;x<=1;x++){
+                if(x>>CHUNK_BITS==cx&&y>>CHUNK_BITS==cy) safe.add((x&CHUNK_MASK) + (y&CHUNK_MASK)*CHUNK);
+            }
+        }
+        int[] excluded = safe.toArray();
+        Arrays.sort(excluded);
+        for(int cell: Grid.sample(CHUNK_CELLS, minesPerChunk, excluded, random)) mines[cell/64] |= 1L<<(cell%64);
+        return mines;
+    }
+    private Chunk chunkOf(int cx, int cy){
+        long key = keyOf(cx, cy);
+        Chunk chunk = hot.get(key);
+        if(chunk==null){
+            chunk = build(cx, cy, cold.remove(key));
+            hot.put(key, chunk);
+        }
+        return chunk;
+    }
+    private Chunk build(int cx, int cy, long[] faces){
+        long[][] around = new long[9][];
+        for(int j = 0;j<3;j++){
+            for(int i = 0;i<3;i++) around[i + j*3] = minesOf(cx + i - 1, cy + j - 1);
+        }
+        Chunk chunk = new Chunk();
+        for(int ly = 0;ly<CHUNK;ly++){
+            for(int lx = 0;lx<CHUNK;lx++){
+                int value = 0;
+                if(isMine(around, lx, ly)){
+                    value = Grid.MINE;
+                }else{
+                    for(int d = 0;d<8;d++) if(isMine(around, lx + Grid.DX[d], ly + Grid.DY[d])) value++;
+                }
+                chunk.cells[lx + ly*CHUNK] = (byte)value;
+            }
+        }
+        if(faces!=null){
+            for(int i = 0;i<CHUNK_CELLS;i++){
+                if((faces[i/64]>>>(i%64)&1)!=0) chunk.cells[i] |= Grid.REMOVED;
+                if((faces[WORDS + i/64]>>>(i%64)&1)!=0) chunk.cells[i] |= Grid.FLAGGED;
+                if((chunk.cells[i]&Grid.FACE_MASK)!=Grid.DEFAULT) chunk.touched++;
+            }
+        }
+        return chunk;
+    }
+    // lx and ly may reach one cell into the neighboring chunks
+    private static boolean isMine(long[][] around, int lx, int ly){
+        int i = (lx + CHUNK)>>CHUNK_BITS;
+        int j = (ly + CHUNK)>>CHUNK_BITS;
+        int cell = (lx&CHUNK_MASK) + (ly&CHUNK_MASK)*CHUNK;
+        return (around[i + j*3][cell/64]>>>(cell%64)&1)!=0;
+    }
+    private int cellOf(int x, int y){
+        return chunkOf(x>>CHUNK_BITS, y>>CHUNK_BITS).cells[(x&CHUNK_MASK) + (y&CHUNK_MASK)*CHUNK];
+    }
+    private void setFace(int x, int y, int face){
+        Chunk chunk = chunkOf(x>>CHUNK_BITS, y>>CHUNK_BITS);
+        int local = (x&CHUNK_MASK) + (y&CHUNK_MASK)*CHUNK;
+        int old = chunk.cells[local]&Grid.FACE_MASK;
+        if(old==Grid.DEFAULT&&face!=Grid.DEFAULT) chunk.touched++;
+        if(old!=Grid.DEFAULT&&face==Grid.DEFAULT) chunk.touched--;
+        chunk.cells[local] = (byte)(chunk.cells[local]&Grid.VALUE_MASK|face);
+    }
+    // returns the packed coordinates of the revealed cells, see xOf and yOf
+    long[] open(int x, int y){
+        if(status==Status.EXPLODED) return new long[0];
+        status = Status.RUNNING;
+        queueX.clear();
+        queueY.clear();
+        reveal(x, y);
+        for(int head = 0;head<queueX.size();head++){
+            int cx = queueX.get(head);
+            int cy = queueY.get(head);
+            if((cellOf(cx, cy)&Grid.VALUE_MASK)!=0) continue;
+            for(int d = 0;d<8;d++) reveal(cx + Grid.DX[d], cy + Grid.DY[d]);
+        }
+        long[] revealed = new long[queueX.size()];
+        for(int i = 0;i<revealed.length;i++) revealed[i] = pack(queueX.get(i), queueY.get(i));
+        return revealed;
+    }
+    private void reveal(int x, int y){
+        int cell = cellOf(x, y);
+        if((cell&Grid.FACE_MASK)!=Grid.DEFAULT) return;
+        setFace(x, y, Grid.REMOVED);
+        queueX.add(x);
+        queueY.add(y);
+        if((cell&Grid.VALUE_MASK)==Grid.MINE){
+            status = Status.EXPLODED;
+        }else{
+            openCount++;
+        }
+    }
+    void toggleFlag(int x, int y){
+        if(status!=Status.RUNNING) return;
+        int face = cellOf(x, y)&Grid.FACE_MASK;
+        if(face==Grid.DEFAULT){
+            setFace(x, y, Grid.FLAGGED);
+            flagCount++;
+        }else if(face==Grid.FLAGGED){
+            setFace(x, y, Grid.DEFAULT);
+            flagCount--;
+        }
+    }
+    long[] flagOpen(int x, int y){
+        if(status!=Status.RUNNING) return new long[0];
+        int cell = cellOf(x, y);
+        if((cell&Grid.FACE_MASK)!=Grid.REMOVED) return new long[0];
+        int flagged = 0;
+        for(int d = 0;d<8;d++) if((cellOf(x + Grid.DX[d], y + Grid.DY[d])&Grid.FACE_MASK)==Grid.FLAGGED) flagged++;
+        if((cell&Grid.VALUE_MASK)!=flagged) return new long[0];
+        IntList xs = new IntList();
+        IntList ys = new IntList();
+        for(int d = 0;d<8;d++){
+            for(long packed: open(x + Grid.DX[d], y + Grid.DY[d])){
+                xs.add(xOf(packed));
+                ys.add(yOf(packed));
+            }
+        }
+        long[] revealed = new long[xs.size()];
+        for(int i = 0;i<revealed.length;i++) revealed[i] = pack(xs.get(i), ys.get(i));
+        return revealed;
+    }
+    MineField.CellView getViewOf(int x, int y){
+        int cx = x>>CHUNK_BITS;
+        int cy = y>>CHUNK_BITS;
+        long key = keyOf(cx, cy);
+        // chunks nobody has played on look covered without being built
+        if(!hot.containsKey(key)&&!cold.containsKey(key)&&!isFinished()) return MineField.CellView.COVERED;
+        int cell = cellOf(x, y);
+        boolean mine = (cell&Grid.VALUE_MASK)==Grid.MINE;
+        switch(cell&Grid.FACE_MASK){
+            case Grid.DEFAULT: return isFinished()&&mine? MineField.CellView.STILL_COVERED: MineField.CellView.COVERED;
+            case Grid.FLAGGED: return isFinished()&&!mine? MineField.CellView.MISS_FLAGGED: MineField.CellView.FLAGGED;
+            case Grid.REMOVED: return VIEWS[cell&Grid.VALUE_MASK];
+        }
+        throw new IllegalArgumentException();
+    }
+    boolean isDefault(){
+        return status==Status.READY;
+    }
+    boolean isRunning(){
+        return status==Status.RUNNING;
+    }
+    boolean isFinished(){
+        return status==Status.EXPLODED;
+    }
+    long getOpenCount(){
+        return openCount;
+    }
+    long getFlagCount(){
+        return flagCount;
+    }
+    int getHotChunkCount(){
+        return hot.size();
+    }
+    int getColdChunkCount(){
+        return cold.size();
+    }
+    // what a hint reveals, like CHEAT in the UI; builds the chunk if needed
+    boolean isMineAt(int x, int y){
+        return (cellOf(x, y)&Grid.VALUE_MASK)==Grid.MINE;
+    }
+    // Plays by the count rules from (0, 0) until the given number of cells is open. When the rules are
+    // stuck it takes a hint: the safe covered cell next to the most recent openings that lies farthest
+    // east, so play marches away from the start and the chunks behind it go cold.
+    private static class Explorer{
+        private static final int RECENT = 4096;
+        private final InfiniteField field;
+        private final ArrayDeque<Long> numbers = new ArrayDeque<>();
+        private final long[] recent = new long[RECENT];
+        private long revealed = 0;
+        private long hints = 0;
+        private Explorer(InfiniteField field){
+            this.field = field;
+        }
+        private void add(long[] cells){
+            for(long packed: cells){
+                recent[(int)(revealed++%RECENT)] = packed;
+                if(isNumber(field.getViewOf(xOf(packed), yOf(packed)))) numbers.add(packed);
+            }
+        }
+        private void run(long target){
+            add(field.open(0, 0));
+            while(field.isRunning()&&field.getOpenCount()<target){
+                if(numbers.isEmpty()){
+                    long hint = hint();
+                    if(hint==Long.MIN_VALUE) return;
+                    hints++;
+                    add(field.open(xOf(hint), yOf(hint)));
+                    continue;
+                }
+                long packed = numbers.poll();
+                int x = xOf(packed);
+                int y = yOf(packed);
+                int covered = 0;
+                int flagged = 0;
+                for(int d = 0;d<8;d++){
+                    MineField.CellView view = field.getViewOf(x + Grid.DX[d], y + Grid.DY[d]);
+                    if(view==MineField.CellView.COVERED) covered++;
+                    if(view==MineField.CellView.FLAGGED) flagged++;
+                }
+                int rest = field.getViewOf(x, y).ordinal() - flagged;
+                if(covered==0||(rest!=0&&rest!=covered)) continue;
+                if(rest==0){
+                    add(field.flagOpen(x, y));
+                    continue;
+                }
+                for(int d = 0;d<8;d++){
+                    if(field.getViewOf(x + Grid.DX[d], y + Grid.DY[d])!=MineField.CellView.COVERED) continue;
+                    field.toggleFlag(x + Grid.DX[d], y + Grid.DY[d]);
+                    // the numbers around a new flag may now be settled
+                    for(int e = 0;e<8;e++){
+                        int nx = x + Grid.DX[d] + Grid.DX[e];
+                        int ny = y + Grid.DY[d] + Grid.DY[e];
+                        if(isNumber(field.getViewOf(nx, ny))) numbers.add(pack(nx, ny));
+                    }
+                }
+            }
+        }
+        private static boolean isNumber(MineField.CellView view){
+            return view.ordinal()>0&&view.ordinal()<=8;
+        }
+        private long hint(){
+            long best = Long.MIN_VALUE;
+            for(int i = 0;i<Math.min(revealed, RECENT);i++){
+                for(int d = 0;d<8;d++){
+                    int x = xOf(recent[i]) + Grid.DX[d];
+                    int y = yOf(recent[i]) + Grid.DY[d];
+                    if(best!=Long.MIN_VALUE&&x<=xOf(best)) continue;
+                    if(field.getViewOf(x, y)==MineField.CellView.COVERED&&!field.isMineAt(x, y)) best = pack(x, y);
+                }
+            }
+            return best;
+        }
+    }
+    // usage: java InfiniteField [cells] [--seed n] [--density d] [--hot chunks]
+    public static void main(String[] args){
+        long cells = 1000000;
+        long seed = System.nanoTime();
+        double density = 0.16;
+        int hotLimit = 256;
+        for(int i = 0;i<args.length;i++){
+            if(args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+            else if(args[i].equals("--density")) density = Double.parseDouble(args[++i]);
+            else if(args[i].equals("--hot")) hotLimit = Integer.parseInt(args[++i]);
+            else cells = Long.parseLong(args[i]);
+        }
+        InfiniteField field = new InfiniteField(seed, density, hotLimit);
+        Explorer explorer = new Explorer(field);
+        long start = System.nanoTime();
+        explorer.run(cells);
+        double seconds = (System.nanoTime() - start)/1e9;
+        // the start area has long gone cold by now and is rebuilt from its packed faces to be read
+        int shown = 0;
+        for(int y = -CHUNK;y<CHUNK;y++){
+            for(int x = -CHUNK;x<CHUNK;x++){
+                if(field.getViewOf(x, y)!=MineField.CellView.COVERED) shown++;
+            }
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf(Locale.ROOT, "opened=%d flags=%d hints=%d exploded=%b hot=%d cold=%d start_area_shown=%d cells_per_sec=%.0f heap_mb=%d%n",
+                field.getOpenCount(), field.getFlagCount(), explorer.hints, field.isFinished(), field.getHotChunkCount(),
+                field.getColdChunkCount(), shown, field.getOpenCount()/seconds, (runtime.totalMemory() - runtime.freeMemory())>>20);
+    }
+}
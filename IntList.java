@@ -0,0 +1,33 @@
+import java.util.Arrays;
+
+class IntList{
+    private int[] values;
+    private int size = 0;
+    IntList(){
+        this(16);
+    }
+    IntList(int capacity){
+        this.values = new int[Math.max(capacity, 1)];
+    }
+    void add(int value){
+        if(size==values.length) values = Arrays.copyOf(values, values.length*2);
+        values[size++] = value;
+    }
+    int get(int index){
+        if(index>=size) throw new IndexOutOfBoundsException("" + index);
+        return values[index];
+    }
+    int removeLast(){
+        if(size==0) throw new IndexOutOfBoundsException();
+        return values[--size];
+    }
+    int size(){
+        return size;
+    }
+    void clear(){
+        size = 0;
+    }
+    int[] toArray(){
+        return Arrays.copyOf(values, size);
+    }
+}
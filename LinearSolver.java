@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+// Reads each number as an equation over its covered neighbors (their mines add up to what the number
+// still misses) and finds cells that several numbers force together. Overlapping equations are
+// compared through their differences, and the system is reduced by Gaussian elimination over GF(2),
+// which keeps every row a plain bitset: a count implies its parity, so a row that reduces to a
+// single cell fixes that cell.
+class LinearSolver{
+    // larger components are left to the enumerating phases, elimination grows with the cube of the size
+    private static final int MAX_VARIABLES = 1024;
+    private final int height;
+    private final int width;
+    // variable of each board cell while solving, -1 otherwise
+    private final int[] variableOf;
+    LinearSolver(int height, int width){
+        this.height = height;
+        this.width = width;
+        this.variableOf = new int[height*width];
+        Arrays.fill(variableOf, -1);
+    }
+    // cells is the AutoMiner view, numbers the numbers to build equations from
+    void solve(int[] cells, int[] numbers, IntList mines, IntList safe){
+        IntList variables = new IntList();
+        int[][] equations = new int[numbers.length][];
+        int[] rest = new int[numbers.length];
+        int count = 0;
+        IntList around = new IntList(8);
+        for(int number: numbers){
+            around.clear();
+            int flagged = 0;
+            for(int d = 0;d<8;d++){
+                int n = Grid.neighborOf(number, d, height, width);
+                if(n<0) continue;
+                if(cells[n]==AutoMiner.FLAGGED) flagged++;
+                if(cells[n]!=AutoMiner.COVERED) continue;
+                if(variableOf[n]<0){
+                    variableOf[n] = variables.size();
+                    variables.add(n);
+                }
+                around.add(variableOf[n]);
+            }
+            if(around.size()==0) continue;
+            equations[count] = around.toArray();
+            rest[count++] = cells[number] - flagged;
+        }
+        int[] parent = new int[variables.size()];
+        for(int v = 0;v<parent.length;v++) parent[v] = v;
+        for(int e = 0;e<count;e++){
+            for(int v: equations[e]) union(parent, equations[e][0], v);
+        }
+        // variables and equations bucketed by component root
+        int[] varStart = bucketStarts(parent.length, parent.length, v->find(parent, v));
+        int[] varOrder = bucketOrder(varStart, parent.length, v->find(parent, v));
+        int[] eqStart = bucketStarts(parent.length, count, e->find(parent, equations[e][0]));
+        int[] eqOrder = bucketOrder(eqStart, count, e->find(parent, equations[e][0]));
+        int[] local = new int[parent.length];
+        for(int root = 0;root<parent.length;root++){
+            int size = varStart[root + 1] - varStart[root];
+            if(size==0||size>MAX_VARIABLES) continue;
+            int[] cellsOf = new int[size];
+            for(int i = 0;i<size;i++){
+                int v = varOrder[varStart[root] + i];
+                cellsOf[i] = variables.get(v);
+                local[v] = i;
+            }
+            int rows = eqStart[root + 1] - eqStart[root];
+            long[][] matrix = new long[rows][(size + 63)/64];
+            int[] rhs = new int[rows];
+            for(int r = 0;r<rows;r++){
+                int e = eqOrder[eqStart[root] + r];
+                for(int v: equations[e]) matrix[r][local[v]>>>6] |= 1L<<local[v];
+                rhs[r] = rest[e];
+            }
+            int[] forced = solveComponent(matrix, rhs, size);
+            for(int i = 0;i<size;i++){
+                if(forced[i]==1) mines.add(cellsOf[i]);
+                if(forced[i]==0) safe.add(cellsOf[i]);
+            }
+        }
+        for(int i = 0;i<variables.size();i++) variableOf[variables.get(i)] = -1;
+    }
+    private interface Key{
+        int of(int item);
+    }
+    private static int[] bucketStarts(int buckets, int items, Key key){
+        int[] start = new int[buckets + 1];
+        for(int i = 0;i<items;i++) start[key.of(i) + 1]++;
+        for(int b = 0;b<buckets;b++) start[b + 1] += start[b];
+        return start;
+    }
+    private static int[] bucketOrder(int[] start, int items, Key key){
+        int[] next = start.clone();
+        int[] order = new int[items];
+        for(int i = 0;i<items;i++) order[next[key.of(i)]++] = i;
+        return order;
+    }
+    private static int find(int[] parent, int v){
+        while(parent[v]!=v){
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+    private static void union(int[] parent, int a, int b){
+        a = find(parent, a);
+        b = find(parent, b);
+        if(a!=b) parent[Math.max(a, b)] = Math.min(a, b);
+    }
+    // returns 1 for a forced mine, 0 for a forced safe cell and -1 otherwise
+    private static int[] solveComponent(long[][] matrix, int[] rhs, int size){
+        int[] forced = new int[size];
+        Arrays.fill(forced, -1);
+        int rows = matrix.length;
+        int words = (size + 63)/64;
+        // rows of each cell, to pair only rows that overlap
+        int[] start = new int[size + 1];
+        for(long[] row: matrix) forEachBit(row, i->start[i + 1]++);
+        for(int i = 0;i<size;i++) start[i + 1] += start[i];
+        int[] next = start.clone();
+        int[] rowsOf = new int[start[size]];
+        for(int r = 0;r<rows;r++){
+            int row = r;
+            forEachBit(matrix[r], i->rowsOf[next[i]++] = row);
+        }
+        // differences: if a misses as many more mines than b as a has cells of its own,
+        // those cells are all mines and the cells only b has are all safe
+        int[] pairedWith = new int[rows];
+        Arrays.fill(pairedWith, -1);
+        IntList partners = new IntList();
+        for(int a = 0;a<rows;a++){
+            partners.clear();
+            for(int w = 0;w<words;w++){
+                for(long bits = matrix[a][w];bits!=0;bits &= bits - 1){
+                    int i = w*64 + Long.numberOfTrailingZeros(bits);
+                    for(int k = start[i];k<start[i + 1];k++){
+                        if(rowsOf[k]!=a&&pairedWith[rowsOf[k]]!=a){
+                            pairedWith[rowsOf[k]] = a;
+                            partners.add(rowsOf[k]);
+                        }
+                    }
+                }
+            }
+            for(int k = 0;k<partners.size();k++){
+                int b = partners.get(k);
+                int onlyA = 0;
+                for(int w = 0;w<words;w++) onlyA += Long.bitCount(matrix[a][w]&~matrix[b][w]);
+                if(rhs[a] - rhs[b]!=onlyA) continue;
+                for(int i = 0;i<size;i++){
+                    long bit = 1L<<i;
+                    boolean inA = (matrix[a][i>>>6]&bit)!=0;
+                    boolean inB = (matrix[b][i>>>6]&bit)!=0;
+                    if(inA&&!inB) forced[i] = 1;
+                    if(inB&&!inA) forced[i] = 0;
+                }
+            }
+        }
+        // elimination over GF(2), with the cells already forced added as rows of their own
+        int known = 0;
+        for(int value: forced) if(value>=0) known++;
+        long[][] m = new long[rows + known][];
+        int[] parity = new int[rows + known];
+        for(int r = 0;r<rows;r++){
+            m[r] = matrix[r].clone();
+            parity[r] = rhs[r]&1;
+        }
+        for(int i = 0, r = rows;i<size;i++){
+            if(forced[i]<0) continue;
+            m[r] = new long[words];
+            m[r][i>>>6] |= 1L<<i;
+            parity[r++] = forced[i];
+        }
+        int rank = 0;
+        for(int column = 0;column<size&&rank<m.length;column++){
+            long bit = 1L<<column;
+            int word = column>>>6;
+            int pivot = rank;
+            while(pivot<m.length&&(m[pivot][word]&bit)==0) pivot++;
+            if(pivot==m.length) continue;
+            long[] row = m[pivot];
+            m[pivot] = m[rank];
+            m[rank] = row;
+            int p = parity[pivot];
+            parity[pivot] = parity[rank];
+            parity[rank] = p;
+            for(int r = 0;r<m.length;r++){
+                if(r==rank||(m[r][word]&bit)==0) continue;
+                for(int w = word;w<words;w++) m[r][w] ^= row[w];
+                parity[r] ^= p;
+            }
+            rank++;
+        }
+        for(int r = 0;r<rank;r++){
+            int single = -1;
+            int bits = 0;
+            for(int w = 0;w<words&&bits<2;w++){
+                bits += Long.bitCount(m[r][w]);
+                if(m[r][w]!=0) single = w*64 + Long.numberOfTrailingZeros(m[r][w]);
+            }
+            if(bits==1) forced[single] = parity[r];
+        }
+        return forced;
+    }
+    private interface BitAction{
+        void run(int bit);
+    }
+    private static void forEachBit(long[] row, BitAction action){
+        for(int w = 0;w<row.length;w++){
+            for(long bits = row[w];bits!=0;bits &= bits - 1) action.run(w*64 + Long.numberOfTrailingZeros(bits));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and histograms of the game engine and the solver. Recording only adds to LongAdders,
+// so it takes no lock and is cheap enough to stay on. Every histogram is registered as an MBean
+// under "RouhMineSweeper:type=Histogram,name=...", and -Dminesweeper.metrics.dump=<seconds>
+// prints all of them periodically to stderr.
+class Metrics{
+    private static final List<Histogram> ALL = new ArrayList<>();
+    static final Histogram OPEN = new Histogram("MineField.open", "ns");
+    static final Histogram FLAG_OPEN = new Histogram("MineField.flagOpen", "ns");
+    // cells revealed by one open or flagOpen call
+    static final Histogram CASCADE = new Histogram("MineField.cascade", "cells");
+    static final Histogram GENERATE = new Histogram("MineField.generate", "ns");
+    static final Histogram SYNCHRONIZE = new Histogram("AutoMiner.synchronize", "ns");
+    static final Histogram SIMPLE = new Histogram("AutoMiner.simpleMining", "ns");
+    // numbers checked by one simpleMining call
+    static final Histogram SIMPLE_ITERATIONS = new Histogram("AutoMiner.simpleMining.iterations", "numbers");
+    static final Histogram PATTERN = new Histogram("AutoMiner.patternMining", "ns");
+    static final Histogram LINEAR = new Histogram("AutoMiner.linearMining", "ns");
+    static final Histogram ABSURD = new Histogram("AutoMiner.absurdDeductionMining", "ns");
+    // complete hypotheses tried by one absurdDeductionMining call
+    static final Histogram HYPOTHESES = new Histogram("AutoMiner.absurdDeductionMining.hypotheses", "hypotheses");
+    static final Histogram FRONTIER = new Histogram("AutoMiner.frontierMining", "ns");
+    static final Histogram ACCEPT = new Histogram("AutoMiner.accept", "ns");
+    static{
+        register();
+        String period = System.getProperty("minesweeper.metrics.dump");
+        if(period!=null) startDump(Long.parseLong(period), System.err);
+    }
+    // values are bucketed by bit length, so percentiles are upper bounds within a factor of two
+    static class Histogram implements DynamicMBean{
+        private static final String[] ATTRIBUTES = {"Count", "Sum", "Mean", "P50", "P90", "P99", "Max"};
+        private final String name;
+        private final String unit;
+        private final LongAdder[] buckets = new LongAdder[65];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private Histogram(String name, String unit){
+            this.name = name;
+            this.unit = unit;
+            for(int i = 0;i<buckets.length;i++) buckets[i] = new LongAdder();
+            ALL.add(this);
+        }
+        void record(long value){
+            if(value<0) value = 0;
+            buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+        // records the time since start, a System.nanoTime() reading
+        void since(long start){
+            record(System.nanoTime() - start);
+        }
+        long getCount(){
+            return count.sum();
+        }
+        long getSum(){
+            return sum.sum();
+        }
+        double getMean(){
+            long n = count.sum();
+            return n==0? 0: (double)sum.sum()/n;
+        }
+        long getMax(){
+            return max.get();
+        }
+        long percentile(double p){
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for(int i = 0;i<counts.length;i++) total += counts[i] = buckets[i].sum();
+            long rank = (long)Math.ceil(p*total);
+            long seen = 0;
+            for(int i = 0;i<counts.length;i++){
+                seen += counts[i];
+                if(seen>=rank&&counts[i]>0) return Math.min(max.get(), i==0? 0: i==64? Long.MAX_VALUE: (1L<<i) - 1);
+            }
+            return 0;
+        }
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException{
+            switch(attribute){
+                case "Count": return getCount();
+                case "Sum": return getSum();
+                case "Mean": return getMean();
+                case "P50": return percentile(0.5);
+                case "P90": return percentile(0.9);
+                case "P99": return percentile(0.99);
+                case "Max": return getMax();
+                default: throw new AttributeNotFoundException(attribute);
+            }
+        }
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException{
+            throw new AttributeNotFoundException(attribute.getName() + " is read only");
+        }
+        @Override
+        public AttributeList getAttributes(String[] attributes){
+            AttributeList list = new AttributeList();
+            for(String attribute: attributes){
+                try{
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                }catch(AttributeNotFoundException e){
+                    // unknown attributes are left out, as the interface asks
+                }
+            }
+            return list;
+        }
+        @Override
+        public AttributeList setAttributes(AttributeList attributes){
+            return new AttributeList();
+        }
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException{
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+        @Override
+        public MBeanInfo getMBeanInfo(){
+            MBeanAttributeInfo[] infos = new MBeanAttributeInfo[ATTRIBUTES.length];
+            for(int i = 0;i<infos.length;i++){
+                String type = ATTRIBUTES[i].equals("Mean")? "double": "long";
+                String unitOf = ATTRIBUTES[i].equals("Count")? "calls": unit;
+                infos[i] = new MBeanAttributeInfo(ATTRIBUTES[i], type, ATTRIBUTES[i] + " (" + unitOf + ")", true, false, false);
+            }
+            return new MBeanInfo(getClass().getName(), name + " in " + unit, infos, null, null, null);
+        }
+        private void print(PrintStream out){
+            out.printf(Locale.ROOT, "%s count=%d mean=%.1f p50<=%d p90<=%d p99<=%d max=%d %s%n", name, getCount(), getMean(),
+                    percentile(0.5), percentile(0.9), percentile(0.99), getMax(), unit);
+        }
+    }
+    private static void register(){
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for(Histogram histogram: ALL){
+            try{
+                ObjectName name = new ObjectName("RouhMineSweeper:type=Histogram,name=" + histogram.name);
+                if(!server.isRegistered(name)) server.registerMBean(histogram, name);
+            }catch(JMException e){
+                e.printStackTrace();
+            }
+        }
+    }
+    static void dump(PrintStream out){
+        for(Histogram histogram: ALL) histogram.print(out);
+        out.flush();
+    }
+    static ScheduledExecutorService startDump(long periodSeconds, PrintStream out){
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r->{
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(()->dump(out), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        return executor;
+    }
+}
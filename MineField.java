@@ -1,24 +1,84 @@
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
-import java.util.stream.*;
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 class MineField{
+    // boards at least this large count their mines in parallel row stripes
+    private static final int PARALLEL_THRESHOLD = 1<<20;
+    private static final int STRIPE_ROWS = 64;
+    // snapshots keep the board in chunks of this many cells, shared between snapshots while unchanged
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK = 1<<CHUNK_BITS;
     private Status status = Status.READY;
-    private List<Cell> cells = new ArrayList<>();
+    // packed as in Grid
+    private final byte[] cells;
+    // the last snapshot taken or restored, cells differ from it only in dirty chunks
+    private Snapshot base = null;
+    private final boolean[] dirty;
     private final int height;
     private final int width;
     private final int mines;
+    private long seed;
+    private SplittableRandom random;
+    private boolean noGuess = false;
+    private int firstClick = -1;
     private int openCount = 0;
-    private MineField(int height, int width, int mines){
+    private int flagCount = 0;
+    // cells revealed by the current open/flagOpen call, doubles as the cascade queue
+    private final IntList revealed = new IntList();
+    private static final int[] NONE = new int[0];
+    // cells whose view changed since the last drain, null unless requested
+    private IntList changes = null;
+    // every move is appended here while a game is recorded
+    private MoveLog.Writer moveLog = null;
+    MineField(int height, int width, int mines){
+        this(height, width, mines, new SplittableRandom().nextLong());
+    }
+    MineField(int height, int width, int mines, long seed){
+        validate(height, width, mines);
+        int size = height*width;
         this.height = height;
         this.width = width;
         this.mines = mines;
-        IntStream.range(0, height*width).forEach(i->cells.add(new Cell(i)));
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+        this.cells = new byte[size];
+        this.dirty = new boolean[(size + CHUNK - 1)>>CHUNK_BITS];
+    }
+    // throws IllegalArgumentException unless a board of this size can be generated
+    static void validate(int height, int width, int mines){
+        if(height<=0||width<=0||mines<0) throw new IllegalArgumentException();
+        int size = Math.multiplyExact(height, width);
+        // the first click clears the 3x3 block around it, clipped on boards narrower than three cells
+        if(mines>size - Math.min(3, height)*Math.min(3, width)) throw new IllegalArgumentException("too many mines: " + mines);
+    }
+    // rebuilds a generated board from its mine bitmap (bit i of word i/64 set for a mine on cell i)
+    MineField(int height, int width, long[] mineBitmap, long seed, int firstClick){
+        this(height, width, bitCount(mineBitmap), seed);
+        int[] placed = new int[mines];
+        for(int w = 0, m = 0;w<mineBitmap.length;w++){
+            for(long bits = mineBitmap[w];bits!=0;bits &= bits - 1){
+                int cell = w*64 + Long.numberOfTrailingZeros(bits);
+                setValue(cell, Grid.MINE);
+                placed[m++] = cell;
+            }
+        }
+        count(placed);
+        this.firstClick = firstClick;
+        this.status = Status.GENERATED;
+    }
+    private static int bitCount(long[] bitmap){
+        int count = 0;
+        for(long word: bitmap) count += Long.bitCount(word);
+        return count;
     }
     MineField(Difficulty d){
         this(d.height, d.width, d.mines);
     }
+    MineField(Difficulty d, long seed){
+        this(d.height, d.width, d.mines, seed);
+    }
     public enum Difficulty{
         BEGINNER(9, 9, 10),
         INTERMEDIATE(16, 16, 40),
@@ -35,93 +95,176 @@ class MineField{
     private enum Status{
         READY,GENERATED,EXPLODED,SECURED
     }
-    private class Cell{
-        private static final int MINE = 9;
-        private final int index;
-        private int value = 0;
-        private Face face = Face.DEFAULT;
-        private Cell(int index){
-            this.index = index;
-        }
-        private boolean isMine(){
-            return this.value==MINE;
+    private int valueOf(int index){
+        return cells[index]&Grid.VALUE_MASK;
+    }
+    private int faceOf(int index){
+        return cells[index]&Grid.FACE_MASK;
+    }
+    private boolean isMine(int index){
+        return valueOf(index)==Grid.MINE;
+    }
+    private void setValue(int index, int value){
+        cells[index] = (byte)(faceOf(index)|value);
+        dirty[index>>CHUNK_BITS] = true;
+    }
+    private void setFace(int index, int face){
+        cells[index] = (byte)(valueOf(index)|face);
+        dirty[index>>CHUNK_BITS] = true;
+    }
+    private void flagOpen(int target){
+        int flagged = 0;
+        for(int d = 0;d<8;d++){
+            int n = Grid.neighborOf(target, d, height, width);
+            if(n>=0&&faceOf(n)==Grid.FLAGGED) flagged++;
         }
-        private List<Cell> aroundCells(){
-            return IntStream.range(0, 9).filter(i->i!=4)
-                    .mapToObj(i->new int[]{index%width+i%3-1,index/width+i/3-1})
-                    .filter(p->p[0]>=0&&p[0]<width&&p[1]>=0&&p[1]<height)
-                    .mapToInt(p->p[0] + p[1]*width)
-                    .mapToObj(cells::get)
-                    .collect(Collectors.toList());
+        if(valueOf(target)==flagged){
+            for(int d = 0;d<8;d++){
+                int n = Grid.neighborOf(target, d, height, width);
+                if(n>=0) open(n);
+            }
         }
     }
-    private enum Face{
-        DEFAULT,FLAGGED,REMOVED
+    private void toggleFlag(int target){
+        if(faceOf(target)==Grid.DEFAULT){
+            setFace(target, Grid.FLAGGED);
+            flagCount++;
+            changed(target);
+        }else if(faceOf(target)==Grid.FLAGGED){
+            setFace(target, Grid.DEFAULT);
+            flagCount--;
+            changed(target);
+        }
     }
-    private void flagOpen(Cell target){
-        if(target.value==target.aroundCells().stream().filter(cell->cell.face==Face.FLAGGED).count()){
-            target.aroundCells().forEach(this::open);
+    private void generate(int target){
+        long start = System.nanoTime();
+        if(noGuess){
+            // the generator hands back a seed whose board it solved, which is then regenerated below
+            OptionalLong found = new NoGuessGenerator(height, width, mines).search(target, random);
+            if(found.isPresent()){
+                seed = found.getAsLong();
+                random = new SplittableRandom(seed);
+            }else{
+                // an ordinary board from where the search left off, which no longer claims to be solvable
+                noGuess = false;
+                seed = random.nextLong();
+                random = new SplittableRandom(seed);
+            }
         }
+        int[] placed = Grid.sample(cells.length, mines, safeZoneOf(target), random);
+        for(int cell: placed) setValue(cell, Grid.MINE);
+        count(placed);
+        this.firstClick = target;
+        this.status = Status.GENERATED;
+        Metrics.GENERATE.since(start);
     }
-    private void toggleFlag(Cell target){
-        if(target.face==Face.DEFAULT){
-            target.face = Face.FLAGGED;
-        }else if(target.face==Face.FLAGGED){
-            target.face = Face.DEFAULT;
+    private void count(int[] placed){
+        Arrays.fill(dirty, true);
+        if(cells.length<PARALLEL_THRESHOLD){
+            for(int mine: placed) countAround(mine);
+        }else{
+            countInStripes(placed);
         }
     }
-    private void generate(Cell target){
-        Random random = new Random(); // caution: this is LCG
-        int count = 0;
-        while(count<mines){
-            int randomPoint = random.nextInt(height*width);
-            if(Math.abs(randomPoint%width - target.index%width)>=2||
-                    Math.abs(randomPoint/width - target.index/width)>=2){
-                Cell randomTarget = cells.get(randomPoint);
-                if(!randomTarget.isMine()){
-                    randomTarget.value = Cell.MINE;
-                    count++;
-                }
+    // the first click and its neighbors, in ascending order
+    private int[] safeZoneOf(int target){
+        IntList safe = new IntList(9);
+        int x = target%width;
+        int y = target/width;
+        for(int j = Math.max(0, y - 1);j<=Math.min(height - 1, y + 1);j++){
+            for(int i = Math.max(0, x - 1);i<=Math.min(width - 1, x + 1);i++){
+                safe.add(i + j*width);
             }
         }
-        cells.stream().filter(cell->!cell.isMine())
-                .forEach(cell->cell.value = (int)cell.aroundCells().stream().filter(Cell::isMine).count());
-        this.status = Status.GENERATED;
+        return safe.toArray();
     }
-    private void open(Cell target){
-        if(target.face==Face.DEFAULT){
-            target.face = Face.REMOVED;
-            if(target.isMine()){
-                status = Status.EXPLODED;
-            }else if(++openCount==height*width-mines){
-                status = Status.SECURED;
-            }else if(target.value==0){
-                target.aroundCells().forEach(this::open);
+    private void countAround(int mine){
+        for(int d = 0;d<8;d++){
+            int n = Grid.neighborOf(mine, d, height, width);
+            if(n>=0&&!isMine(n)) cells[n]++;
+        }
+    }
+    // mines are bucketed by row stripe, then even and odd stripes are counted in two parallel rounds
+    // so that no two stripes touching the same row run at once
+    private void countInStripes(int[] placed){
+        int stripes = (height + STRIPE_ROWS - 1)/STRIPE_ROWS;
+        int[] start = new int[stripes + 1];
+        for(int mine: placed) start[mine/width/STRIPE_ROWS + 1]++;
+        for(int s = 0;s<stripes;s++) start[s + 1] += start[s];
+        int[] next = start.clone();
+        int[] sorted = new int[placed.length];
+        for(int mine: placed) sorted[next[mine/width/STRIPE_ROWS]++] = mine;
+        for(int parity = 0;parity<2;parity++){
+            int first = parity;
+            IntStream.range(0, (stripes - first + 1)/2).parallel().map(i->first + i*2).forEach(s->{
+                for(int i = start[s];i<start[s + 1];i++) countAround(sorted[i]);
+            });
+        }
+    }
+    private void open(int target){
+        if(faceOf(target)!=Grid.DEFAULT) return;
+        int head = revealed.size();
+        reveal(target);
+        while(head<revealed.size()){
+            int cell = revealed.get(head++);
+            if(valueOf(cell)!=0) continue;
+            for(int d = 0;d<8;d++){
+                int n = Grid.neighborOf(cell, d, height, width);
+                if(n>=0&&faceOf(n)==Grid.DEFAULT) reveal(n);
             }
         }
     }
+    private void reveal(int target){
+        setFace(target, Grid.REMOVED);
+        revealed.add(target);
+        changed(target);
+        if(isMine(target)){
+            status = Status.EXPLODED;
+            finished();
+        }else if(++openCount==cells.length - mines){
+            status = Status.SECURED;
+            finished();
+        }
+    }
+    private void changed(int target){
+        if(changes!=null) changes.add(target);
+    }
+    private void finished(){
+        if(changes==null) return;
+        // covered mines and flags change their view once the game is over
+        for(int i = 0;i<cells.length;i++){
+            if(faceOf(i)==Grid.FLAGGED||(faceOf(i)==Grid.DEFAULT&&isMine(i))) changes.add(i);
+        }
+    }
+    private int[] drainRevealed(){
+        if(revealed.size()==0) return NONE;
+        int[] result = revealed.toArray();
+        revealed.clear();
+        return result;
+    }
     @SuppressWarnings("unused")
     public enum CellView{
         M0,M1,M2,M3,M4,M5,M6,M7,M8,MINE,COVERED, FLAGGED, STILL_COVERED, MISS_FLAGGED
     }
-    private CellView getViewOf(Cell target){
+    private static final CellView[] VIEWS = CellView.values();
+    CellView getViewOf(int target){
         if(isFinished()){
-            switch(target.face){
-                case DEFAULT: return target.isMine()? CellView.STILL_COVERED: CellView.COVERED;
-                case FLAGGED: return target.isMine()? CellView.FLAGGED: CellView.MISS_FLAGGED;
-                case REMOVED: return CellView.values()[target.value];
+            switch(faceOf(target)){
+                case Grid.DEFAULT: return isMine(target)? CellView.STILL_COVERED: CellView.COVERED;
+                case Grid.FLAGGED: return isMine(target)? CellView.FLAGGED: CellView.MISS_FLAGGED;
+                case Grid.REMOVED: return VIEWS[valueOf(target)];
             }
         }else{
-            switch(target.face){
-                case DEFAULT: return CellView.COVERED;
-                case FLAGGED: return CellView.FLAGGED;
-                case REMOVED: return CellView.values()[target.value];
+            switch(faceOf(target)){
+                case Grid.DEFAULT: return CellView.COVERED;
+                case Grid.FLAGGED: return CellView.FLAGGED;
+                case Grid.REMOVED: return VIEWS[valueOf(target)];
             }
         }
         throw new IllegalArgumentException();
     }
     CellView getViewOf(int x, int y){
-        return getViewOf(cells.get(x + y*width));
+        return getViewOf(x + y*width);
     }
     CellView[][] getView(){
         CellView[][] view = new CellView[height][width];
@@ -133,17 +276,146 @@ class MineField{
         return view;
     }
     @SuppressWarnings("fallthrough")
-    void open(int x, int y){
+    int[] open(int x, int y){
+        long start = System.nanoTime();
+        if(moveLog!=null) moveLog.add(MoveLog.OPEN, x + y*width);
         switch(status){
-            case READY: generate(cells.get(x + y*width));
-            case GENERATED: open(cells.get(x + y*width));
+            case READY: generate(x + y*width);
+            case GENERATED: open(x + y*width);
         }
+        int[] result = drainRevealed();
+        Metrics.OPEN.since(start);
+        Metrics.CASCADE.record(result.length);
+        return result;
+    }
+    void generate(int x, int y){
+        if(moveLog!=null) moveLog.add(MoveLog.GENERATE, x + y*width);
+        if(status==Status.READY) generate(x + y*width);
     }
     void toggleFlag(int x, int y){
-        if(status==Status.GENERATED) toggleFlag(cells.get(x + y*width));
+        if(moveLog!=null) moveLog.add(MoveLog.FLAG, x + y*width);
+        if(status==Status.GENERATED) toggleFlag(x + y*width);
     }
-    void flagOpen(int x, int y){
-        if(status==Status.GENERATED) flagOpen(cells.get(x + y*width));
+    int[] flagOpen(int x, int y){
+        long start = System.nanoTime();
+        if(moveLog!=null) moveLog.add(MoveLog.FLAG_OPEN, x + y*width);
+        if(status==Status.GENERATED) flagOpen(x + y*width);
+        int[] result = drainRevealed();
+        Metrics.FLAG_OPEN.since(start);
+        Metrics.CASCADE.record(result.length);
+        return result;
+    }
+    void recordChanges(){
+        if(changes==null) changes = new IntList();
+    }
+    // set by MoveLog.create, null stops recording
+    void recordMoves(MoveLog.Writer moveLog){
+        this.moveLog = moveLog;
+    }
+    int[] drainChanges(){
+        if(changes==null||changes.size()==0) return NONE;
+        int[] result = changes.toArray();
+        changes.clear();
+        return result;
+    }
+    // An immutable state of a field, kept as chunks of cells. A snapshot shares every chunk that has not
+    // changed since the previous one, so taking one costs about the cells changed in between.
+    static class Snapshot{
+        private final int height;
+        private final int width;
+        private final int mines;
+        private final byte[][] chunks;
+        private final Status status;
+        private final long seed;
+        private final boolean noGuess;
+        private final int firstClick;
+        private final int openCount;
+        private final int flagCount;
+        private Snapshot(MineField field, byte[][] chunks){
+            this.height = field.height;
+            this.width = field.width;
+            this.mines = field.mines;
+            this.chunks = chunks;
+            this.status = field.status;
+            this.seed = field.seed;
+            this.noGuess = field.noGuess;
+            this.firstClick = field.firstClick;
+            this.openCount = field.openCount;
+            this.flagCount = field.flagCount;
+        }
+        // a new independent field starting from this state
+        MineField fork(){
+            MineField field = new MineField(height, width, mines, seed);
+            field.restore(this);
+            return field;
+        }
+    }
+    Snapshot snapshot(){
+        byte[][] chunks = new byte[dirty.length][];
+        for(int c = 0;c<chunks.length;c++){
+            if(base!=null&&!dirty[c]){
+                chunks[c] = base.chunks[c];
+            }else{
+                int from = c<<CHUNK_BITS;
+                chunks[c] = Arrays.copyOfRange(cells, from, Math.min(cells.length, from + CHUNK));
+                dirty[c] = false;
+            }
+        }
+        base = new Snapshot(this, chunks);
+        return base;
+    }
+    // an independent copy of this field, without the change feed
+    MineField fork(){
+        MineField field = new MineField(height, width, mines, seed);
+        System.arraycopy(cells, 0, field.cells, 0, cells.length);
+        Arrays.fill(field.dirty, true);
+        field.status = status;
+        field.random = new SplittableRandom(seed);
+        field.noGuess = noGuess;
+        field.firstClick = firstClick;
+        field.openCount = openCount;
+        field.flagCount = flagCount;
+        return field;
+    }
+    // returns to a state taken from this field or one of the same size, e.g. for undo;
+    // only chunks that differ are copied back, and cells whose view changes go to the change feed
+    void restore(Snapshot snapshot){
+        if(snapshot.height!=height||snapshot.width!=width||snapshot.mines!=mines){
+            throw new IllegalArgumentException("snapshot of a different board");
+        }
+        boolean wasFinished = isFinished();
+        boolean willFinish = snapshot.status==Status.EXPLODED||snapshot.status==Status.SECURED;
+        for(int c = 0;c<dirty.length;c++){
+            byte[] chunk = snapshot.chunks[c];
+            int from = c<<CHUNK_BITS;
+            boolean same = base!=null&&!dirty[c]&&base.chunks[c]==chunk;
+            if(changes!=null&&(!same||wasFinished!=willFinish)){
+                for(int i = 0;i<chunk.length;i++){
+                    // the finished views of mines and flags change with the status alone
+                    if(cells[from + i]!=chunk[i]||(wasFinished!=willFinish&&(chunk[i]&Grid.FACE_MASK)!=Grid.REMOVED)){
+                        changes.add(from + i);
+                    }
+                }
+            }
+            if(!same) System.arraycopy(chunk, 0, cells, from, chunk.length);
+            dirty[c] = false;
+        }
+        base = snapshot;
+        status = snapshot.status;
+        seed = snapshot.seed;
+        random = new SplittableRandom(seed);
+        noGuess = snapshot.noGuess;
+        firstClick = snapshot.firstClick;
+        openCount = snapshot.openCount;
+        flagCount = snapshot.flagCount;
+    }
+    // boards generated from now on can be cleared from the first click without guessing
+    void setNoGuess(boolean noGuess){
+        if(status==Status.READY) this.noGuess = noGuess;
+    }
+    // false after generation if no board without guessing was found
+    boolean isNoGuess(){
+        return noGuess;
     }
     boolean isDefault(){
         return status==Status.READY;
@@ -166,7 +438,24 @@ class MineField{
     int getMines(){
         return mines;
     }
+    long getSeed(){
+        return seed;
+    }
+    // the cell the board was generated around, or -1 before generation
+    int getFirstClick(){
+        return firstClick;
+    }
+    long[] getMineBitmap(){
+        long[] bitmap = new long[(cells.length + 63)/64];
+        for(int i = 0;i<cells.length;i++){
+            if(isMine(i)) bitmap[i/64] |= 1L<<(i%64);
+        }
+        return bitmap;
+    }
+    int getOpenCount(){
+        return openCount;
+    }
     int getMineCount(){
-        return mines - (int)cells.stream().filter(cell->cell.face==Face.FLAGGED).count();
+        return mines - flagCount;
     }
 }
@@ -1,37 +1,61 @@
 import javax.swing.*;
-import javax.swing.border.BevelBorder;
-import javax.swing.border.Border;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
-public class MineSweeper extends MouseAdapter implements ActionListener{
+public class MineSweeper extends MouseAdapter implements ActionListener, Autoplay.Listener{
     private static final int CELL_SIZE = 30;
+    // larger boards scroll inside a viewport of at most this many cells
+    private static final int VIEW_COLUMNS = 40;
+    private static final int VIEW_ROWS = 24;
+    // -Dminesweeper.moves=<directory> records every game there, to be replayed with "java MoveLog file"
+    private static final String MOVE_LOG_DIRECTORY = System.getProperty("minesweeper.moves");
     private MineField.Difficulty difficulty;
-    private MineField.CellView[][] viewLog;
+    private boolean noGuess = false;
     private MineField game;
+    private Autoplay autoplay;
+    private MoveLog.Writer moveLog;
+    // null while the overlay is off
+    private Heatmap heatmap = null;
+    private double[] probabilities = null;
     private int height;
     private int width;
     private JFrame frame;
     private JPanel upper;
-    private JPanel field;
+    private JScrollPane field;
     private JPanel lower;
-    private JLabel[][] cells;
+    private BoardComponent board;
     private JComboBox<MineField.Difficulty> comboBox;
+    private JCheckBox noGuessBox;
     private JButton resetButton;
     private JButton cheatButton;
+    private JToggleButton autoButton;
+    private JToggleButton heatButton;
     private JLabel timeCounter;
     private JLabel mineCounter;
-    private final Object locker = new Object();
-    private boolean timer = false;
-    private int currentX = 0;
-    private int currentY = 0;
+    private final Timer clock = new Timer(1000, e->tick());
+    private int elapsed = 0;
+    private int currentX = -1;
+    private int currentY = -1;
     private MineSweeper(MineField.Difficulty difficulty){
+        this(difficulty, new MineField(difficulty));
+    }
+    // a custom sized board, RESET keeps its size until another difficulty is chosen
+    private MineSweeper(int height, int width, int mines){
+        this(null, new MineField(height, width, mines));
+    }
+    private MineSweeper(MineField.Difficulty difficulty, MineField game){
         this.difficulty = difficulty;
-        this.game = new MineField(difficulty);
-        this.viewLog = game.getView();
+        this.game = game;
+        this.game.recordChanges();
+        startRecording();
+        this.autoplay = new Autoplay(game, new AutoMiner(game), this);
         this.height = game.getHeight();
         this.width = game.getWidth();
         frame = new JFrame("Rouh Mine Sweeper");
@@ -41,46 +65,64 @@ public class MineSweeper extends MouseAdapter implements ActionListener{
         frame.setLocationRelativeTo(null);
         initializeFrame();
     }
+    private void startRecording(){
+        if(MOVE_LOG_DIRECTORY==null) return;
+        try{
+            if(moveLog!=null) moveLog.close();
+            // created with a unique suffix, so games started within the same millisecond keep their own logs
+            Path file = Files.createTempFile(Paths.get(MOVE_LOG_DIRECTORY), "game-" + System.currentTimeMillis() + "-", ".rmml");
+            moveLog = MoveLog.create(file, game, true);
+        }catch(IOException e){
+            e.printStackTrace();
+            moveLog = null;
+        }
+    }
     private void removeComponents(){
         frame.remove(upper);
         frame.remove(field);
         frame.remove(lower);
     }
     private void initializeFrame(){
-        frame.getContentPane().setPreferredSize(new Dimension(CELL_SIZE*width, CELL_SIZE*(2 + height)));
+        int viewWidth = CELL_SIZE*Math.min(width, VIEW_COLUMNS);
+        int viewHeight = CELL_SIZE*Math.min(height, VIEW_ROWS);
+        int scrollBar = new JScrollBar(JScrollBar.VERTICAL).getPreferredSize().width;
+        if(height>VIEW_ROWS) viewWidth += scrollBar;
+        if(width>VIEW_COLUMNS) viewHeight += scrollBar;
+        frame.getContentPane().setPreferredSize(new Dimension(viewWidth, 2*CELL_SIZE + viewHeight));
         frame.pack();
         upper = new JPanel();
-        upper.setSize(CELL_SIZE*width, CELL_SIZE);
+        upper.setSize(viewWidth, CELL_SIZE);
         upper.setLocation(0, 0);
         comboBox = new JComboBox<>(MineField.Difficulty.values());
         comboBox.setSelectedItem(difficulty);
+        noGuessBox = new JCheckBox("NO GUESS", noGuess);
         resetButton = new JButton("RESET");
         resetButton.addActionListener(this);
         cheatButton = new JButton("CHEAT");
         cheatButton.addActionListener(this);
+        autoButton = new JToggleButton("AUTO");
+        autoButton.addActionListener(this);
+        heatButton = new JToggleButton("HEAT", heatmap!=null);
+        heatButton.addActionListener(this);
         upper.add(comboBox);
+        upper.add(noGuessBox);
         upper.add(resetButton);
         upper.add(cheatButton);
-        field = new JPanel();
-        field.setVisible(true);
-        field.setLayout(new GridLayout(height, width));
-        field.setSize(CELL_SIZE*width, CELL_SIZE*height);
+        upper.add(autoButton);
+        upper.add(heatButton);
+        board = new BoardComponent(game, CELL_SIZE);
+        board.setProbabilities(probabilities);
+        board.addMouseListener(this);
+        board.addMouseMotionListener(this);
+        field = new JScrollPane(board);
+        field.setBorder(BorderFactory.createEmptyBorder());
+        field.getHorizontalScrollBar().setUnitIncrement(CELL_SIZE);
+        field.getVerticalScrollBar().setUnitIncrement(CELL_SIZE);
+        field.setSize(viewWidth, viewHeight);
         field.setLocation(0, CELL_SIZE);
-        cells = new JLabel[height][width];
-        for(int i = 0;i<height;i++){
-            for(int j = 0;j<width;j++){
-                cells[i][j] = new JLabel();
-                cells[i][j].setOpaque(true);
-                cells[i][j].setVisible(true);
-                cells[i][j].addMouseListener(this);
-                cells[i][j].setHorizontalAlignment(SwingConstants.CENTER);
-                updateViewOf(j, i);
-                field.add(cells[i][j]);
-            }
-        }
         lower = new JPanel();
-        lower.setSize(CELL_SIZE*width, CELL_SIZE);
-        lower.setLocation(0, CELL_SIZE*(1 + height));
+        lower.setSize(viewWidth, CELL_SIZE);
+        lower.setLocation(0, CELL_SIZE + viewHeight);
         timeCounter = new JLabel("0");
         mineCounter = new JLabel("" + game.getMines());
         lower.add(new JLabel("TIME: "));
@@ -93,133 +135,80 @@ public class MineSweeper extends MouseAdapter implements ActionListener{
         frame.setVisible(true);
         frame.repaint();
     }
-    private class TimerThread extends Thread{
-        @Override
-        public void run(){
-            synchronized(locker){
-                timer = true;
-                try{
-                    int counter = 0;
-                    while(game.isRunning()){
-                        timeCounter.setText("" + (++counter));
-                        locker.wait(1000);
-                    }
-                    timer = false;
-                }catch(InterruptedException e){
-                    e.printStackTrace();
-                }
-            }
+    private void startClock(){
+        if(clock.isRunning()||!game.isRunning()) return;
+        // the search for a no-guess board can give up, the player is told the board is an ordinary one
+        if(noGuess&&!game.isNoGuess()){
+            lower.add(new JLabel("no no-guess board found"));
+            lower.revalidate();
         }
+        elapsed = 1;
+        timeCounter.setText("" + elapsed);
+        clock.start();
     }
-    private void updateMineCount(){
-        mineCounter.setText(""+game.getMineCount());
-    }
-    private static final Color ENTERED_COLOR = new Color(70, 160, 70);
-    private static final Color COVERED_COLOR = new Color(30, 120, 30);
-    class Style{
-        private String text;
-        private Border border;
-        private Color background;
-        private Color foreground;
-        Style(String text, Color color,  boolean covered){
-            this.text = text;
-            this.border = new BevelBorder(covered? BevelBorder.RAISED: BevelBorder.LOWERED);
-            this.background = covered? COVERED_COLOR: new Color(140,200,140);
-            this.foreground = color;
+    private void tick(){
+        if(game.isRunning()){
+            timeCounter.setText("" + (++elapsed));
+        }else{
+            clock.stop();
         }
     }
-    private Style getStyleOf(MineField.CellView view){
-        switch(view){
-            case M0: return new Style("　", Color.BLACK, false);
-            case M1: return new Style("１", new Color(51, 102, 204), false);
-            case M2: return new Style("２", new Color(0, 153, 51), false);
-            case M3: return new Style("３", new Color(204, 51, 0), false);
-            case M4: return new Style("４", new Color(0, 51, 153), false);
-            case M5: return new Style("５", new Color(102, 0, 0), false);
-            case M6: return new Style("６", new Color(31, 184, 133), false);
-            case M7: return new Style("７", new Color(204, 0, 51), false);
-            case M8: return new Style("８", new Color(30, 0, 0), false);
-            case MINE: return new Style("※", Color.RED, false);
-            case COVERED: return new Style("　", Color.BLACK, true);
-            case STILL_COVERED: return new Style("☓", game.isSecured()?Color.BLACK:Color.WHITE, true);
-            case FLAGGED: return new Style("▼", game.isSecured()?Color.BLACK:Color.RED, true);
-            case MISS_FLAGGED: return new Style("▽", Color.RED, true);
-            default: throw new IllegalArgumentException();
-        }
+    private void updateMineCount(){
+        mineCounter.setText(""+game.getMineCount());
     }
     private void updateViewOf(int x, int y){
-        viewLog[y][x] = game.getViewOf(x, y);
-        Style style = getStyleOf(viewLog[y][x]);
-        cells[y][x].setText(style.text);
-        cells[y][x].setBorder(style.border);
-        cells[y][x].setForeground(style.foreground);
-        cells[y][x].setBackground(style.background);
+        board.repaintCell(x, y);
     }
-    private void updateAllView(){
-        for(int i = 0;i<height;i++){
-            for(int j = 0;j<width;j++){
-                updateViewOf(j, i);
-            }
+    private void updateChangedView(){
+        int[] changes = game.drainChanges();
+        for(int index: changes){
+            updateViewOf(index%width, index/width);
         }
+        if(heatmap!=null) heatmap.changed(changes);
     }
-    private void updateViewSpirallyFrom(int x, int y){
-        updateViewOf(x, y);
-        MineField.CellView[][] view = game.getView();
-        int[] weightX = {0, 1, 0, -1};
-        int[] weightY = {-1, 0, 1, 0};
-        for(int i = 1, d = 0, ld = 0;;i++){
-            for(int j = 0;j<2;j++,d++){
-                for(int k = 0;k<i;k++){
-                    if(d - ld>4) return;
-                    x += weightX[d%4];
-                    y += weightY[d%4];
-                    if(isWithin(x, y)){
-                        //ld = d; // check all
-                        if(view[y][x]!=viewLog[y][x]){
-                            updateViewOf(x, y);
-                            ld = d; //check partly
-                        }
-                    }
-                }
-            }
-        }
+    private void startHeatmap(){
+        heatmap = new Heatmap(game, probabilities->{
+            this.probabilities = probabilities;
+            board.setProbabilities(probabilities);
+        });
+    }
+    private void stopHeatmap(){
+        if(heatmap!=null) heatmap.close();
+        heatmap = null;
+        probabilities = null;
+        board.setProbabilities(null);
     }
     private boolean isWithin(int x, int y){
         return x>=0&&x<width&&y>=0&&y<height;
     }
-    private int[] sourcePointOf(MouseEvent e){
-        for(int i = 0;i<height;i++){
-            for(int j = 0;j<width;j++){
-                if(e.getSource().equals(cells[i][j])){
-                    return new int[]{j, i};
-                }
-            }
-        }
-        throw new IllegalArgumentException();
+    private void moveTo(MouseEvent e){
+        int[] point = board.cellAt(e.getPoint());
+        currentX = point==null? -1: point[0];
+        currentY = point==null? -1: point[1];
+        board.setEntered(currentX, currentY);
     }
     @Override
     public void mouseEntered(MouseEvent e){
-        int[] point = sourcePointOf(e);
-        int x = point[0];
-        int y = point[1];
-        currentX = x;
-        currentY = y;
-        if(!game.isFinished()&&game.getViewOf(x, y)==MineField.CellView.COVERED){
-            cells[y][x].setBackground(ENTERED_COLOR);
-        }
+        moveTo(e);
+    }
+    @Override
+    public void mouseMoved(MouseEvent e){
+        moveTo(e);
+    }
+    @Override
+    public void mouseDragged(MouseEvent e){
+        moveTo(e);
     }
     @Override
     public void mouseExited(MouseEvent e){
-        int[] point = sourcePointOf(e);
-        int x = point[0];
-        int y = point[1];
-        if(game.getViewOf(x, y)==MineField.CellView.COVERED){
-            cells[y][x].setBackground(COVERED_COLOR);
-        }
+        currentX = -1;
+        currentY = -1;
+        board.setEntered(-1, -1);
     }
     @Override
     public void mousePressed(MouseEvent e){
-        int[] point = sourcePointOf(e);
+        int[] point = board.cellAt(e.getPoint());
+        if(point==null) return;
         int x = point[0];
         int y = point[1];
         boolean isLeft = SwingUtilities.isLeftMouseButton(e);
@@ -227,12 +216,12 @@ public class MineSweeper extends MouseAdapter implements ActionListener{
         boolean isDoubleClick = e.getClickCount()==2;
         if((isLeft && isRight) || (isLeft && isDoubleClick)){
             game.flagOpen(x, y);
-            updateViewSpirallyFrom(x, y);
+            updateChangedView();
             if(game.isFinished()) result();
         }else if(isRight){
             game.toggleFlag(x, y);
             updateMineCount();
-            updateViewOf(x, y);
+            updateChangedView();
         }
     }
     @Override
@@ -240,10 +229,12 @@ public class MineSweeper extends MouseAdapter implements ActionListener{
         if(SwingUtilities.isLeftMouseButton(e)){
             int x = currentX;
             int y = currentY;
-            if(isWithin(x, y)){
+            if(isWithin(x, y)&&game.isDefault()&&game.isNoGuess()){
+                autoplay.openFirst(x, y);
+            }else if(isWithin(x, y)){
                 game.open(x, y);
-                if(!timer) new TimerThread().start();
-                updateViewSpirallyFrom(x, y);
+                startClock();
+                updateChangedView();
                 if(game.isFinished()) result();
             }
         }
@@ -252,24 +243,61 @@ public class MineSweeper extends MouseAdapter implements ActionListener{
     public void actionPerformed(ActionEvent e){
         if(e.getSource().equals(resetButton)){
             difficulty =  (MineField.Difficulty)comboBox.getSelectedItem();
-            game = new MineField(difficulty);
+            noGuess = noGuessBox.isSelected();
+            game = difficulty==null? new MineField(height, width, game.getMines()): new MineField(difficulty);
+            game.setNoGuess(noGuess);
+            game.recordChanges();
+            autoplay.cancel();
+            startRecording();
+            boolean heat = heatmap!=null;
+            stopHeatmap();
+            if(heat) startHeatmap();
+            autoplay = new Autoplay(game, new AutoMiner(game), this);
+            clock.stop();
             height = game.getHeight();
             width = game.getWidth();
-            viewLog = new MineField.CellView[height][width];
             removeComponents();
             initializeFrame();
-            updateAllView();
         }else if(e.getSource().equals(cheatButton)){
-            new AutoMiner(game).execute();
-            if(!timer) new TimerThread().start();
-            updateAllView();
+            if(!autoplay.isRunning()) autoplay.step();
+        }else if(e.getSource().equals(autoButton)){
+            if(autoButton.isSelected()){
+                autoplay.start();
+            }else{
+                autoplay.cancel();
+            }
+        }else if(e.getSource().equals(heatButton)){
+            if(heatButton.isSelected()){
+                startHeatmap();
+            }else{
+                stopHeatmap();
+            }
         }
     }
+    @Override
+    public void moved(){
+        startClock();
+        updateMineCount();
+        updateChangedView();
+        if(game.isFinished()) result();
+    }
+    @Override
+    public void stopped(){
+        // a cancelled autoplay of the previous game may report in after the reset
+        if(!autoplay.isRunning()) autoButton.setSelected(false);
+    }
     private void result(){
-        updateAllView();
+        // the finished look drops the hover and recolors flags, only the visible part is painted
+        board.repaint();
         lower.add(new JLabel(game.isSecured()?"you win":"you lose"));
     }
+    // usage: java MineSweeper [HxWxM]
     public static void main(String[] args){
+        if(args.length>0&&args[0].matches("\\d+x\\d+x\\d+")){
+            String[] size = args[0].split("x");
+            new MineSweeper(Integer.parseInt(size[0]), Integer.parseInt(size[1]), Integer.parseInt(size[2]));
+            return;
+        }
         new MineSweeper(MineField.Difficulty.INTERMEDIATE);
     }
 }
\ No newline at end of file
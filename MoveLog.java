@@ -0,0 +1,241 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// The moves of one game: a header with everything needed to rebuild the board (size, seed, no-guess
+// flag, start time, and the first click and mines if it was already generated), followed by one record per move
+// (kind byte, cell as a varint, microseconds since the previous move as a varint).
+// Records are only ever appended, so a log cut short by a crash still replays up to its last move.
+class MoveLog{
+    static final int OPEN = 0;
+    static final int FLAG = 1;
+    static final int FLAG_OPEN = 2;
+    static final int GENERATE = 3;
+    private static final int MAGIC = 0x524D4D4C; // "RMML"
+    private static final int VERSION = 1;
+    // states are kept every this many moves for stateAt
+    private static final int SNAPSHOT_INTERVAL = 256;
+    private final int height;
+    private final int width;
+    private final int mines;
+    private final long seed;
+    private final int firstClick;
+    private final boolean noGuess;
+    private final long startMillis;
+    // null unless the board was generated before recording started
+    private final long[] mineBitmap;
+    private final byte[] kinds;
+    private final int[] moveCells;
+    private final long[] micros;
+    // snapshots[k] is the state after k*SNAPSHOT_INTERVAL moves, filled by the first stateAt
+    private List<MineField.Snapshot> snapshots = null;
+    private MoveLog(DataInputStream in) throws IOException{
+        if(in.readInt()!=MAGIC) throw new IOException("not a move log");
+        if(in.readInt()!=VERSION) throw new IOException("unsupported move log version");
+        this.height = in.readInt();
+        this.width = in.readInt();
+        this.mines = in.readInt();
+        this.seed = in.readLong();
+        this.firstClick = in.readInt();
+        this.noGuess = in.readBoolean();
+        this.startMillis = in.readLong();
+        if(firstClick>=0){
+            this.mineBitmap = new long[(height*width + 63)/64];
+            for(int w = 0;w<mineBitmap.length;w++) mineBitmap[w] = in.readLong();
+        }else{
+            this.mineBitmap = null;
+        }
+        IntList kinds = new IntList();
+        IntList cells = new IntList();
+        List<Long> times = new ArrayList<>();
+        long time = 0;
+        while(true){
+            int kind = in.read();
+            if(kind<0) break;
+            try{
+                int cell = (int)readVarint(in);
+                time += readVarint(in);
+                kinds.add(kind);
+                cells.add(cell);
+                times.add(time);
+            }catch(EOFException e){
+                break; // a record torn by a crash
+            }
+        }
+        this.kinds = new byte[kinds.size()];
+        this.moveCells = cells.toArray();
+        this.micros = new long[times.size()];
+        for(int i = 0;i<this.kinds.length;i++){
+            this.kinds[i] = (byte)kinds.get(i);
+            this.micros[i] = times.get(i);
+        }
+    }
+    static MoveLog read(Path path) throws IOException{
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))){
+            return new MoveLog(in);
+        }
+    }
+    private static long readVarint(DataInputStream in) throws IOException{
+        long value = 0;
+        for(int shift = 0;;shift += 7){
+            int b = in.readUnsignedByte();
+            value |= (long)(b&0x7F)<<shift;
+            if((b&0x80)==0) return value;
+        }
+    }
+    private static void writeVarint(DataOutputStream out, long value) throws IOException{
+        while((value&~0x7FL)!=0){
+            out.write((int)(value&0x7F)|0x80);
+            value >>>= 7;
+        }
+        out.write((int)value);
+    }
+    int size(){
+        return kinds.length;
+    }
+    long getSeed(){
+        return seed;
+    }
+    long getStartMillis(){
+        return startMillis;
+    }
+    // microseconds from the start of recording to a move
+    long timeOf(int move){
+        return micros[move];
+    }
+    // the board as it was when recording started
+    MineField newField(){
+        if(mineBitmap!=null) return new MineField(height, width, mineBitmap, seed, firstClick);
+        MineField field = new MineField(height, width, mines, seed);
+        field.setNoGuess(noGuess);
+        return field;
+    }
+    private void apply(MineField field, int move){
+        int x = moveCells[move]%width;
+        int y = moveCells[move]/width;
+        switch(kinds[move]){
+            case OPEN: field.open(x, y); break;
+            case FLAG: field.toggleFlag(x, y); break;
+            case FLAG_OPEN: field.flagOpen(x, y); break;
+            case GENERATE: field.generate(x, y); break;
+            default: throw new IllegalStateException("unknown move kind " + kinds[move]);
+        }
+    }
+    // every move at full speed
+    MineField replay(){
+        MineField field = newField();
+        for(int move = 0;move<kinds.length;move++) apply(field, move);
+        return field;
+    }
+    // the board after the given number of moves, replayed from the nearest earlier snapshot
+    MineField stateAt(int moves){
+        if(moves<0||moves>kinds.length) throw new IndexOutOfBoundsException("" + moves);
+        if(snapshots==null){
+            snapshots = new ArrayList<>();
+            MineField field = newField();
+            for(int move = 0;move<kinds.length;move++){
+                if(move%SNAPSHOT_INTERVAL==0) snapshots.add(field.snapshot());
+                apply(field, move);
+            }
+            if(kinds.length%SNAPSHOT_INTERVAL==0) snapshots.add(field.snapshot());
+        }
+        MineField field = snapshots.get(moves/SNAPSHOT_INTERVAL).fork();
+        for(int move = moves/SNAPSHOT_INTERVAL*SNAPSHOT_INTERVAL;move<moves;move++) apply(field, move);
+        return field;
+    }
+    static class Writer implements Closeable{
+        private final DataOutputStream out;
+        private final boolean autoFlush;
+        private long last = System.nanoTime();
+        private Writer(DataOutputStream out, boolean autoFlush){
+            this.out = out;
+            this.autoFlush = autoFlush;
+        }
+        // called by MineField; an I/O failure surfaces as UncheckedIOException from the move
+        void add(int kind, int cell){
+            long now = System.nanoTime();
+            try{
+                out.write(kind);
+                writeVarint(out, cell);
+                writeVarint(out, (now - last)/1000);
+                if(autoFlush) out.flush();
+            }catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+            // the remainder below a microsecond is carried over to the next move
+            last = now - (now - last)%1000;
+        }
+        @Override
+        public void close() throws IOException{
+            out.close();
+        }
+    }
+    // starts a log of a field nobody has moved on yet, and attaches it to the field;
+    // autoFlush writes every move through, for logs that must survive a crash
+    static Writer create(Path path, MineField field, boolean autoFlush) throws IOException{
+        if(field.getOpenCount()>0||field.getMineCount()!=field.getMines()){
+            throw new IllegalStateException("moves were made before recording started");
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(field.getHeight());
+        out.writeInt(field.getWidth());
+        out.writeInt(field.getMines());
+        out.writeLong(field.getSeed());
+        out.writeInt(field.getFirstClick());
+        out.writeBoolean(field.isNoGuess());
+        out.writeLong(System.currentTimeMillis());
+        if(field.getFirstClick()>=0){
+            for(long word: field.getMineBitmap()) out.writeLong(word);
+        }
+        out.flush();
+        Writer writer = new Writer(out, autoFlush);
+        field.recordMoves(writer);
+        return writer;
+    }
+    // usage: java MoveLog file [--at moves]
+    // replays the whole log at full speed, or prints the board after the given number of moves
+    public static void main(String[] args) throws IOException{
+        if(args.length<1) throw new IllegalArgumentException("usage: java MoveLog file [--at moves]");
+        MoveLog log = read(Paths.get(args[0]));
+        if(args.length>2&&args[1].equals("--at")){
+            MineField field = log.stateAt(Integer.parseInt(args[2]));
+            for(MineField.CellView[] row: field.getView()){
+                StringBuilder line = new StringBuilder();
+                for(MineField.CellView view: row) line.append(charOf(view));
+                System.out.println(line);
+            }
+            return;
+        }
+        log.replay(); // the first replay pays for class loading and metrics registration
+        long start = System.nanoTime();
+        MineField field = log.replay();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf(Locale.ROOT, "moves=%d played=%.3fs replayed=%.3fms us_per_move=%.3f result=%s%n", log.size(),
+                log.size()==0? 0: log.timeOf(log.size() - 1)/1e6, elapsed/1e6, log.size()==0? 0: elapsed/1e3/log.size(),
+                field.isSecured()? "won": field.isFinished()? "lost": "unfinished");
+    }
+    private static char charOf(MineField.CellView view){
+        switch(view){
+            case COVERED: return '#';
+            case FLAGGED: return 'F';
+            case MINE: return '*';
+            case STILL_COVERED: return 'x';
+            case MISS_FLAGGED: return 'f';
+            case M0: return '.';
+            default: return (char)('0' + view.ordinal());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.OptionalLong;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+// Searches for boards that AutoMiner can clear from the first click without guessing.
+class NoGuessGenerator{
+    // candidates tried per parallel round
+    private static final int BATCH = Math.max(8, Runtime.getRuntime().availableProcessors()*2);
+    // after this many candidates the search gives up
+    private static final int MAX_CANDIDATES = 20000;
+    private final int height;
+    private final int width;
+    private final int mines;
+    NoGuessGenerator(int height, int width, int mines){
+        this.height = height;
+        this.width = width;
+        this.mines = mines;
+    }
+    // returns the seed of the first solvable candidate, so that the same board is regenerated
+    // from it, or nothing if none of MAX_CANDIDATES candidates is solvable
+    OptionalLong search(int target, SplittableRandom random){
+        long[] seeds = new long[BATCH];
+        // exactly MAX_CANDIDATES seeds are drawn whatever BATCH is, so the result and the state the
+        // random is left in do not depend on the number of cores
+        for(int tried = 0;tried<MAX_CANDIDATES;tried += BATCH){
+            int size = Math.min(BATCH, MAX_CANDIDATES - tried);
+            for(int i = 0;i<size;i++) seeds[i] = random.nextLong();
+            // findFirst keeps the result independent of thread scheduling
+            int found = IntStream.range(0, size).parallel()
+                    .filter(i->isSolvable(seeds[i], target))
+                    .findFirst().orElse(-1);
+            if(found>=0) return OptionalLong.of(seeds[found]);
+        }
+        return OptionalLong.empty();
+    }
+    boolean isSolvable(long seed, int target){
+        MineField field = new MineField(height, width, mines, seed);
+        field.generate(target%width, target/width);
+        return isSolvable(field);
+    }
+    // plays a generated board from its first click
+    static boolean isSolvable(MineField field){
+        int first = field.getFirstClick();
+        field.open(first%field.getWidth(), first/field.getWidth());
+        AutoMiner miner = new AutoMiner(field);
+        while(field.isRunning()){
+            int openCount = field.getOpenCount();
+            int mineCount = field.getMineCount();
+            miner.execute();
+            if(field.getOpenCount()==openCount&&field.getMineCount()==mineCount) return false;
+        }
+        return field.isSecured();
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Forced moves around two orthogonally adjacent numbers A and B, such as the 1-2 and 1-2-1 patterns.
+// The pair is turned so that B is right of A and sits in a window of 3 rows by 4 columns:
+//     0 1 2 3
+//     4 A B 5
+//     6 7 8 9
+// A key packs which of the ten cells are covered with the mines still missing around A and B.
+// The answer packs the cells that must be flags (low ten bits) and the cells that must be safe.
+// The table is generated by "java PatternTable patterns.bin" and read from the class path at startup.
+class PatternTable{
+    static final int CELLS = 10;
+    // window column and row of each key bit
+    static final int[] COLUMN = {0, 1, 2, 3, 0, 3, 0, 1, 2, 3};
+    static final int[] ROW = {0, 0, 0, 0, 1, 1, 2, 2, 2, 2};
+    private static final int MAGIC = 0x524D5054; // "RMPT"
+    private static final int VERSION = 1;
+    private static final String RESOURCE = "patterns.bin";
+    private final int[] table = new int[1<<(CELLS + 8)];
+    private PatternTable(){
+    }
+    static int keyOf(int covered, int restA, int restB){
+        return covered|restA<<CELLS|restB<<(CELLS + 4);
+    }
+    int lookup(int key){
+        return table[key];
+    }
+    // falls back to building the table in memory if the resource is missing or unreadable
+    static PatternTable load(){
+        try(InputStream in = PatternTable.class.getResourceAsStream(RESOURCE)){
+            if(in!=null) return read(in);
+        }catch(IOException e){
+            e.printStackTrace();
+        }
+        return generate();
+    }
+    private static PatternTable read(InputStream in) throws IOException{
+        DataInputStream data = new DataInputStream(new GZIPInputStream(in));
+        if(data.readInt()!=MAGIC) throw new IOException("not a pattern table");
+        if(data.readInt()!=VERSION) throw new IOException("unsupported pattern table version");
+        PatternTable patterns = new PatternTable();
+        int count = data.readInt();
+        for(int i = 0;i<count;i++){
+            int key = data.readInt();
+            patterns.table[key] = data.readInt();
+        }
+        return patterns;
+    }
+    static PatternTable generate(){
+        PatternTable patterns = new PatternTable();
+        for(int key = 0;key<patterns.table.length;key++){
+            patterns.table[key] = solve(key&((1<<CELLS) - 1), key>>CELLS&0xF, key>>(CELLS + 4)&0xF);
+        }
+        return patterns;
+    }
+    // tries every placement of mines on the covered cells that satisfies both numbers
+    private static int solve(int covered, int restA, int restB){
+        int aroundA = 0;
+        int aroundB = 0;
+        for(int k = 0;k<CELLS;k++){
+            if(COLUMN[k]<=2) aroundA |= 1<<k;
+            if(COLUMN[k]>=1) aroundB |= 1<<k;
+        }
+        int always = covered;
+        int ever = 0;
+        boolean consistent = false;
+        for(int mines = covered;;mines = (mines - 1)&covered){
+            if(Integer.bitCount(mines&aroundA)==restA&&Integer.bitCount(mines&aroundB)==restB){
+                always &= mines;
+                ever |= mines;
+                consistent = true;
+            }
+            if(mines==0) break;
+        }
+        // a contradiction is left to the count rules
+        return consistent? always|(covered&~ever)<<CELLS: 0;
+    }
+    void write(String file) throws IOException{
+        int count = 0;
+        for(int value: table) if(value!=0) count++;
+        try(DataOutputStream data = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(Paths.get(file))))){
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(count);
+            for(int key = 0;key<table.length;key++){
+                if(table[key]==0) continue;
+                data.writeInt(key);
+                data.writeInt(table[key]);
+            }
+        }
+    }
+    // usage: java PatternTable [file]
+    public static void main(String[] args) throws IOException{
+        generate().write(args.length>0? args[0]: RESOURCE);
+    }
+}
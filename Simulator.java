@@ -0,0 +1,220 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+class Simulator{
+    private static final int CHUNK = 10000;
+    private static final int MAX_STEPS = 100000;
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+    private final int height;
+    private final int width;
+    private final int mines;
+    private final String name;
+    private final long seed;
+    // boards are replayed from here instead of generated when set
+    private final BoardCorpus corpus;
+    private boolean guessing = false;
+    private boolean noGuessBoards = false;
+    Simulator(MineField.Difficulty d, long seed){
+        MineField field = new MineField(d);
+        this.height = field.getHeight();
+        this.width = field.getWidth();
+        this.mines = field.getMines();
+        this.name = d.name();
+        this.seed = seed;
+        this.corpus = null;
+    }
+    Simulator(int height, int width, int mines, long seed){
+        MineField.validate(height, width, mines);
+        this.height = height;
+        this.width = width;
+        this.mines = mines;
+        this.name = height + "x" + width + "x" + mines;
+        this.seed = seed;
+        this.corpus = null;
+    }
+    Simulator(BoardCorpus corpus, String name){
+        this.height = corpus.getHeight();
+        this.width = corpus.getWidth();
+        this.mines = corpus.getMines();
+        this.name = name;
+        this.seed = 0;
+        this.corpus = corpus;
+    }
+    static class Result{
+        private static final int BUCKETS = 10;
+        private long games = 0;
+        private long secured = 0;
+        private long exploded = 0;
+        private long stuck = 0;
+        private long steps = 0;
+        private long solverNanos = 0;
+        // progress (opened safe cells / all safe cells) of stuck games, in tenths
+        private final long[] stuckAt = new long[BUCKETS];
+        private void add(Game game){
+            games++;
+            steps += game.steps;
+            solverNanos += game.solverNanos;
+            if(game.field.isSecured()){
+                secured++;
+            }else if(game.field.isFinished()){
+                exploded++;
+            }else{
+                stuck++;
+                int safe = game.field.getHeight()*game.field.getWidth() - game.field.getMines();
+                stuckAt[(int)Math.min(BUCKETS - 1, (long)game.field.getOpenCount()*BUCKETS/safe)]++;
+            }
+        }
+        private void merge(Result other){
+            games += other.games;
+            secured += other.secured;
+            exploded += other.exploded;
+            stuck += other.stuck;
+            steps += other.steps;
+            solverNanos += other.solverNanos;
+            for(int i = 0;i<BUCKETS;i++) stuckAt[i] += other.stuckAt[i];
+        }
+        double winRate(){
+            return games==0? 0: (double)secured/games;
+        }
+        double solverMillisPerGame(){
+            return games==0? 0: solverNanos/1e6/games;
+        }
+    }
+    private static class Game{
+        private final MineField field;
+        private long steps = 0;
+        private long solverNanos = 0;
+        private Game(MineField field){
+            this.field = field;
+        }
+    }
+    private Game play(long index){
+        Game game = new Game(corpus==null? new MineField(height, width, mines, seed + index*GAMMA): corpus.field(index));
+        game.field.setNoGuess(noGuessBoards);
+        if(!game.field.isDefault()){
+            int first = game.field.getFirstClick();
+            game.field.open(first%width, first/width);
+        }
+        game.field.recordChanges();
+        AutoMiner miner = new AutoMiner(game.field, guessing);
+        while(!game.field.isFinished()&&game.steps<MAX_STEPS){
+            long start = System.nanoTime();
+            miner.execute();
+            game.solverNanos += System.nanoTime() - start;
+            game.steps++;
+            if(game.field.drainChanges().length==0) break;
+        }
+        return game;
+    }
+    Simulator guessing(boolean guessing){
+        this.guessing = guessing;
+        return this;
+    }
+    Simulator noGuessBoards(boolean noGuessBoards){
+        this.noGuessBoards = noGuessBoards;
+        return this;
+    }
+    Result run(long games, Format format, PrintStream out){
+        if(corpus!=null) games = Math.min(games, corpus.size());
+        Result total = new Result();
+        long start = System.nanoTime();
+        for(long done = 0;done<games;){
+            long from = done;
+            int size = (int)Math.min(CHUNK, games - done);
+            Result chunk = IntStream.range(0, size).parallel()
+                    .mapToObj(i->play(from + i))
+                    .collect(Result::new, Result::add, Result::merge);
+            total.merge(chunk);
+            done += size;
+            format.row(out, name, total, System.nanoTime() - start);
+        }
+        return total;
+    }
+    enum Format{
+        CSV{
+            @Override
+            void header(PrintStream out){
+                out.println("board,games,secured,exploded,stuck,win_rate,games_per_sec,solver_ms_per_game,steps_per_game,stuck_at");
+            }
+            @Override
+            void row(PrintStream out, String name, Result r, long elapsedNanos){
+                StringBuilder stuckAt = new StringBuilder();
+                for(int i = 0;i<Result.BUCKETS;i++) stuckAt.append(i==0? "": " ").append(r.stuckAt[i]);
+                out.printf(Locale.ROOT, "%s,%d,%d,%d,%d,%.6f,%.1f,%.4f,%.2f,%s%n", name, r.games, r.secured, r.exploded, r.stuck,
+                        r.winRate(), r.games/(elapsedNanos/1e9), r.solverMillisPerGame(), (double)r.steps/r.games, stuckAt);
+                out.flush();
+            }
+        },
+        JSON{
+            @Override
+            void header(PrintStream out){}
+            @Override
+            void row(PrintStream out, String name, Result r, long elapsedNanos){
+                StringBuilder stuckAt = new StringBuilder();
+                for(int i = 0;i<Result.BUCKETS;i++) stuckAt.append(i==0? "": ",").append(r.stuckAt[i]);
+                out.printf(Locale.ROOT, "{\"board\":\"%s\",\"games\":%d,\"secured\":%d,\"exploded\":%d,\"stuck\":%d,\"winRate\":%.6f,"
+                        + "\"gamesPerSec\":%.1f,\"solverMsPerGame\":%.4f,\"stepsPerGame\":%.2f,\"stuckAt\":[%s]}%n",
+                        name, r.games, r.secured, r.exploded, r.stuck, r.winRate(), r.games/(elapsedNanos/1e9),
+                        r.solverMillisPerGame(), (double)r.steps/r.games, stuckAt);
+                out.flush();
+            }
+        };
+        abstract void header(PrintStream out);
+        abstract void row(PrintStream out, String name, Result r, long elapsedNanos);
+    }
+    // usage: java Simulator [games] [BEGINNER|INTERMEDIATE|ADVANCED|HxWxM ...] [--corpus file ...] [--seed n] [--json] [--guess] [--no-guess] [--metrics]
+    public static void main(String[] args) throws IOException{
+        long games = 1000;
+        long seed = System.nanoTime();
+        boolean guessing = false;
+        boolean noGuessBoards = false;
+        boolean metrics = false;
+        Format format = Format.CSV;
+        List<String> boards = new ArrayList<>();
+        List<String> corpora = new ArrayList<>();
+        for(int i = 0;i<args.length;i++){
+            if(args[i].equals("--seed")){
+                seed = Long.parseLong(args[++i]);
+            }else if(args[i].equals("--json")){
+                format = Format.JSON;
+            }else if(args[i].equals("--corpus")){
+                corpora.add(args[++i]);
+            }else if(args[i].equals("--no-guess")){
+                noGuessBoards = true;
+            }else if(args[i].equals("--guess")){
+                guessing = true;
+            }else if(args[i].equals("--metrics")){
+                metrics = true;
+            }else if(args[i].matches("\\d+")){
+                games = Long.parseLong(args[i]);
+            }else{
+                boards.add(args[i]);
+            }
+        }
+        if(boards.isEmpty()&&corpora.isEmpty()){
+            for(MineField.Difficulty d: MineField.Difficulty.values()) boards.add(d.name());
+        }
+        format.header(System.out);
+        for(String board: boards){
+            Simulator simulator;
+            if(board.matches("\\d+x\\d+x\\d+")){
+                String[] size = board.split("x");
+                simulator = new Simulator(Integer.parseInt(size[0]), Integer.parseInt(size[1]), Integer.parseInt(size[2]), seed);
+            }else{
+                simulator = new Simulator(MineField.Difficulty.valueOf(board), seed);
+            }
+            simulator.guessing(guessing).noGuessBoards(noGuessBoards).run(games, format, System.out);
+        }
+        for(String file: corpora){
+            try(BoardCorpus corpus = BoardCorpus.open(Paths.get(file))){
+                new Simulator(corpus, file).guessing(guessing).run(games, format, System.out);
+            }
+        }
+        if(metrics) Metrics.dump(System.err);
+    }
+}